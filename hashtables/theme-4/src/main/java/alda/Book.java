@@ -24,6 +24,29 @@ public class Book {
     this.price = price;
   }
 
+  /*
+   * Samma som ovan, men titel, författare och innehåll packas in i arenan i
+   * stället för att varje sträng får en egen char-array.
+   */
+  public Book(CharArena arena, String title, String author, String isbn, String content, int price) {
+    this.title = arena.allocate(title);
+    this.author = arena.allocate(author);
+    this.isbn = new ISBN10(isbn);
+    this.content = arena.allocate(content);
+    this.price = price;
+  }
+
+  /*
+   * För inläsning där fälten redan är tolkade, t.ex. av CatalogLoader.
+   */
+  public Book(MyString title, MyString author, ISBN10 isbn, MyString content, int price) {
+    this.title = title;
+    this.author = author;
+    this.isbn = isbn;
+    this.content = content;
+    this.price = price;
+  }
+
   public MyString getTitle() {
     return title;
   }
@@ -89,7 +112,6 @@ public class Book {
     int hash = primeHash + isbn.hashCode();
     hash = hash * primeHash + (title.hashCode());
     hash = hash * primeHash + (author.hashCode());
-    System.out.println(hash);
     return hash;
   }
 
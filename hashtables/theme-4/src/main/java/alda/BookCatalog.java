@@ -0,0 +1,159 @@
+package alda;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Catalog of books with a primary index on ISBN and secondary multi-valued
+ * indexes on author and title. All indexes are ProbingHashMaps and refer to
+ * the same Book objects, so a lookup by author or title reads one compact
+ * bucket instead of scanning the catalog.
+ *
+ * The books must not be mutated behind the catalog's back, except for the
+ * price which no index depends on; use setPrice to change it by ISBN.
+ */
+public class BookCatalog {
+
+  /**
+   * Insert a book. A book with the same ISBN is replaced in all indexes.
+   *
+   * @param book the book to insert.
+   * @return the replaced book, or null if the ISBN was new.
+   */
+  public Book insert(Book book) {
+    Book old = byIsbn.put(book.getIsbn(), book);
+    if (old != null) {
+      unindex(byAuthor, old.getAuthor(), old);
+      unindex(byTitle, old.getTitle(), old);
+    }
+    byAuthor.computeIfAbsent(book.getAuthor(), k -> new Bucket()).addBook(book);
+    byTitle.computeIfAbsent(book.getTitle(), k -> new Bucket()).addBook(book);
+    return old;
+  }
+
+  /**
+   * Remove a book by ISBN.
+   *
+   * @param isbn the ISBN of the book.
+   * @return the removed book, or null if it was not in the catalog.
+   */
+  public Book remove(ISBN10 isbn) {
+    Book old = byIsbn.remove(isbn);
+    if (old != null) {
+      unindex(byAuthor, old.getAuthor(), old);
+      unindex(byTitle, old.getTitle(), old);
+    }
+    return old;
+  }
+
+  /**
+   * Find a book by ISBN.
+   *
+   * @param isbn the ISBN.
+   * @return the book, or null if it is not in the catalog.
+   */
+  public Book get(ISBN10 isbn) {
+    return byIsbn.get(isbn);
+  }
+
+  /**
+   * Change the price of a book. The price is not indexed, so the book keeps its
+   * place in every index.
+   *
+   * @param isbn  the ISBN of the book.
+   * @param price the new price.
+   * @return true if the book was found.
+   */
+  public boolean setPrice(ISBN10 isbn, int price) {
+    Book book = byIsbn.get(isbn);
+    if (book == null)
+      return false;
+    book.setPrice(price);
+    return true;
+  }
+
+  /**
+   * Find all books by an author.
+   *
+   * @param author the author.
+   * @return a read-only view of the matching books, valid until the next
+   *         insert or remove.
+   */
+  public List<Book> byAuthor(MyString author) {
+    return lookup(byAuthor, author);
+  }
+
+  /**
+   * Find all books with a title.
+   *
+   * @param title the title.
+   * @return a read-only view of the matching books, valid until the next insert
+   *         or remove.
+   */
+  public List<Book> byTitle(MyString title) {
+    return lookup(byTitle, title);
+  }
+
+  /**
+   * Get the number of books.
+   *
+   * @return the number of books.
+   */
+  public int size() {
+    return byIsbn.size();
+  }
+
+  private static List<Book> lookup(ProbingHashMap<MyString, Bucket> index, MyString key) {
+    Bucket bucket = index.get(key);
+    return bucket == null ? List.of() : bucket;
+  }
+
+  private static void unindex(ProbingHashMap<MyString, Bucket> index, MyString key, Book book) {
+    Bucket bucket = index.get(key);
+    if (bucket != null && bucket.removeBook(book) && bucket.isEmpty())
+      index.remove(key);
+  }
+
+  /**
+   * The books sharing one secondary key, kept in an array that is compacted by
+   * moving the last book into the hole on removal.
+   */
+  private static class Bucket extends AbstractList<Book> {
+    private Book[] books = new Book[2];
+    private int size;
+
+    void addBook(Book book) {
+      if (size == books.length)
+        books = Arrays.copyOf(books, size * 2);
+      books[size++] = book;
+    }
+
+    boolean removeBook(Book book) {
+      for (int i = 0; i < size; i++)
+        if (books[i] == book) {
+          books[i] = books[--size];
+          books[size] = null;
+          return true;
+        }
+      return false;
+    }
+
+    @Override
+    public Book get(int index) {
+      if (index >= size)
+        throw new IndexOutOfBoundsException(index);
+      return books[index];
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+  }
+
+  private final ProbingHashMap<ISBN10, Book> byIsbn = new QuadraticProbingHashMap<>();
+  private final ProbingHashMap<MyString, Bucket> byAuthor = new QuadraticProbingHashMap<>();
+  private final ProbingHashMap<MyString, Bucket> byTitle = new QuadraticProbingHashMap<>();
+
+}
@@ -0,0 +1,369 @@
+package alda;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loads a catalog dump into a ProbingHashTable. The file has one book per
+ * line with the tab separated fields
+ *
+ * isbn title author price content
+ *
+ * encoded in UTF-8. The file is split into ranges that are parsed in parallel
+ * through positional FileChannel reads. A parser decodes the fields straight
+ * from its byte buffer into a CharArena and validates the ISBN on a char
+ * buffer, so no String is created per book. Parsed books are handed over in
+ * batches through a bounded queue to the calling thread, which is the only
+ * one inserting into the table since ProbingHashTable is not thread safe.
+ *
+ * Lines with the wrong number of fields, an invalid ISBN or a price that is
+ * not a non-negative int are counted as rejected and skipped.
+ */
+public class CatalogLoader {
+
+  /**
+   * Construct a loader with one parser per available processor.
+   */
+  public CatalogLoader() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Construct a loader.
+   *
+   * @param parsers the number of parser threads.
+   */
+  public CatalogLoader(int parsers) {
+    this(parsers, MINIMUM_RANGE);
+  }
+
+  CatalogLoader(int parsers, long minimumRange) {
+    if (parsers < 1)
+      throw new IllegalArgumentException("At least one parser is needed");
+    this.parsers = parsers;
+    this.minimumRange = minimumRange;
+  }
+
+  /**
+   * Counters from one load.
+   */
+  public static class Result {
+    private long lines;
+    private long rejected;
+    private long inserted;
+    private long duplicates;
+
+    public long lines() {
+      return lines;
+    }
+
+    public long rejected() {
+      return rejected;
+    }
+
+    public long inserted() {
+      return inserted;
+    }
+
+    public long duplicates() {
+      return duplicates;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("lines: %d inserted: %d duplicates: %d rejected: %d", lines, inserted, duplicates,
+          rejected);
+    }
+  }
+
+  /**
+   * Load a catalog file into a table.
+   *
+   * @param file  the catalog dump.
+   * @param table the table to insert the books into.
+   * @return the counters of the load.
+   * @throws IOException if the file cannot be read.
+   */
+  public Result load(Path file, ProbingHashTable<Book> table) throws IOException, InterruptedException {
+    Result result = new Result();
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      int tasks = (int) Math.max(1, Math.min(parsers, size / minimumRange));
+      BlockingQueue<Book[]> queue = new ArrayBlockingQueue<>(QUEUE_BATCHES);
+      ExecutorService executor = Executors.newFixedThreadPool(tasks);
+      try {
+        List<Future<long[]>> futures = new ArrayList<>(tasks);
+        for (int i = 0; i < tasks; i++) {
+          long start = size * i / tasks;
+          long end = size * (i + 1) / tasks;
+          futures.add(executor.submit(() -> new RangeParser(channel, start, end, queue).run()));
+        }
+
+        // Insert until every parser has sent its end marker
+        int running = tasks;
+        while (running > 0) {
+          Book[] batch = queue.take();
+          if (batch == END) {
+            running--;
+            continue;
+          }
+          for (Book book : batch) {
+            if (book == null)
+              break;
+            if (table.insert(book))
+              result.inserted++;
+            else
+              result.duplicates++;
+          }
+        }
+
+        for (Future<long[]> future : futures) {
+          long[] counts = future.get();
+          result.lines += counts[0];
+          result.rejected += counts[1];
+        }
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof IOException)
+          throw (IOException) e.getCause();
+        throw new IllegalStateException(e.getCause());
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Parses the lines that start in [start, end). The first partial line belongs
+   * to the previous range and the last line may run past end.
+   */
+  private static class RangeParser {
+    private final FileChannel channel;
+    private final long end;
+    private final BlockingQueue<Book[]> queue;
+    private final CharArena arena = new CharArena();
+    private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private char[] chars = new char[256];
+    private final int[] tabs = new int[4];
+    private long position;
+    private Book[] batch = new Book[BATCH_SIZE];
+    private int batchSize;
+    private long lines;
+    private long rejected;
+
+    RangeParser(FileChannel channel, long start, long end, BlockingQueue<Book[]> queue) {
+      this.channel = channel;
+      this.position = start;
+      this.end = end;
+      this.queue = queue;
+    }
+
+    long[] run() throws IOException, InterruptedException {
+      try {
+        buffer.limit(0);
+        if (position > 0) {
+          // Skip to the first line starting at or after the range start
+          position--;
+          if (!skipLine())
+            return new long[] { lines, rejected };
+        }
+        while (position < end) {
+          int lineEnd = findLineEnd();
+          if (lineEnd < 0)
+            break;
+          int lineStart = buffer.position();
+          long lineLength = lineEnd - lineStart;
+          parseLine(lineStart, lineEnd);
+          buffer.position(lineEnd < buffer.limit() ? lineEnd + 1 : lineEnd);
+          position += lineLength + 1;
+        }
+        if (batchSize > 0)
+          queue.put(Arrays.copyOf(batch, batchSize));
+      } finally {
+        queue.put(END);
+      }
+      return new long[] { lines, rejected };
+    }
+
+    /**
+     * Skip past the next newline.
+     *
+     * @return false if the end of the file was reached.
+     */
+    private boolean skipLine() throws IOException {
+      int lineEnd = findLineEnd();
+      if (lineEnd < 0 || lineEnd == buffer.limit())
+        return false;
+      position += lineEnd - buffer.position() + 1;
+      buffer.position(lineEnd + 1);
+      return true;
+    }
+
+    /**
+     * Find the end of the line starting at the buffer position, refilling or
+     * growing the buffer as needed.
+     *
+     * @return the index of the newline, buffer.limit() for a last line without
+     *         newline, or -1 at the end of the file.
+     */
+    private int findLineEnd() throws IOException {
+      int scanned = buffer.position();
+      while (true) {
+        byte[] bytes = buffer.array();
+        for (int i = scanned; i < buffer.limit(); i++)
+          if (bytes[i] == '\n')
+            return i;
+        scanned = buffer.limit() - buffer.position();
+
+        buffer.compact();
+        if (!buffer.hasRemaining()) {
+          ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+          buffer.flip();
+          larger.put(buffer);
+          buffer = larger;
+        }
+        long fileOffset = position + buffer.position();
+        int read = channel.read(buffer, fileOffset);
+        buffer.flip();
+        if (read < 0)
+          return buffer.hasRemaining() ? buffer.limit() : -1;
+      }
+    }
+
+    private void parseLine(int from, int to) throws InterruptedException {
+      byte[] bytes = buffer.array();
+      if (to > from && bytes[to - 1] == '\r')
+        to--;
+      if (to == from)
+        return;
+      lines++;
+
+      int found = 0;
+      for (int i = from; i < to && found <= 4; i++)
+        if (bytes[i] == '\t') {
+          if (found == 4) {
+            found++;
+            break;
+          }
+          tabs[found++] = i;
+        }
+      if (found != 4 || tabs[0] - from != 10) {
+        rejected++;
+        return;
+      }
+
+      for (int i = 0; i < 10; i++)
+        chars[i] = (char) bytes[from + i];
+      int price = parsePrice(bytes, tabs[2] + 1, tabs[3]);
+      if (!ISBN10.isValid(chars, 0) || price < 0) {
+        rejected++;
+        return;
+      }
+
+      ISBN10 isbn = new ISBN10(chars, 0);
+      MyString title = decode(bytes, tabs[0] + 1, tabs[1]);
+      MyString author = decode(bytes, tabs[1] + 1, tabs[2]);
+      MyString content = decode(bytes, tabs[3] + 1, to);
+
+      batch[batchSize++] = new Book(title, author, isbn, content, price);
+      if (batchSize == BATCH_SIZE) {
+        queue.put(batch);
+        batch = new Book[BATCH_SIZE];
+        batchSize = 0;
+      }
+    }
+
+    /**
+     * Parse a non-negative decimal int.
+     *
+     * @return the value, or -1 if the field is empty, not a number or too large.
+     */
+    private static int parsePrice(byte[] bytes, int from, int to) {
+      if (from == to || to - from > 9)
+        return -1;
+      int value = 0;
+      for (int i = from; i < to; i++) {
+        int d = bytes[i] - '0';
+        if (d < 0 || d > 9)
+          return -1;
+        value = value * 10 + d;
+      }
+      return value;
+    }
+
+    /**
+     * Decode UTF-8 into the arena. Malformed sequences become U+FFFD.
+     */
+    private MyString decode(byte[] bytes, int from, int to) {
+      if (chars.length < to - from)
+        chars = new char[Math.max(to - from, chars.length * 2)];
+      int n = 0;
+      int i = from;
+      while (i < to) {
+        int b = bytes[i++];
+        if (b >= 0) {
+          chars[n++] = (char) b;
+          continue;
+        }
+        int extra;
+        int cp;
+        if ((b & 0xE0) == 0xC0) {
+          extra = 1;
+          cp = b & 0x1F;
+        } else if ((b & 0xF0) == 0xE0) {
+          extra = 2;
+          cp = b & 0x0F;
+        } else if ((b & 0xF8) == 0xF0) {
+          extra = 3;
+          cp = b & 0x07;
+        } else {
+          chars[n++] = '\uFFFD';
+          continue;
+        }
+        if (i + extra > to) {
+          chars[n++] = '\uFFFD';
+          break;
+        }
+        boolean malformed = false;
+        for (int k = 0; k < extra; k++) {
+          int c = bytes[i + k];
+          malformed |= (c & 0xC0) != 0x80;
+          cp = (cp << 6) | (c & 0x3F);
+        }
+        if (malformed) {
+          chars[n++] = '\uFFFD';
+          continue;
+        }
+        i += extra;
+        if (cp >= 0x10000) {
+          chars[n++] = Character.highSurrogate(cp);
+          chars[n++] = Character.lowSurrogate(cp);
+        } else
+          chars[n++] = (char) cp;
+      }
+      return arena.allocate(chars, 0, n);
+    }
+  }
+
+  private static final Book[] END = new Book[0];
+  private static final int BUFFER_SIZE = 1 << 20;
+  private static final int BATCH_SIZE = 1024;
+  private static final int QUEUE_BATCHES = 64;
+  private static final long MINIMUM_RANGE = 1 << 20;
+
+  private final int parsers;
+  private final long minimumRange; // Smallest range worth a parser of its own
+
+}
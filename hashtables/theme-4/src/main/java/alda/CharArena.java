@@ -0,0 +1,98 @@
+package alda;
+
+/**
+ * Slab allocator for MyString. The characters of many strings are copied into
+ * large shared chunks and each MyString is only a view into a chunk, so a
+ * string costs one small object instead of an object plus its own char[].
+ *
+ * Chunks are never compacted: a chunk stays reachable for as long as any
+ * string allocated in it is. An arena is not thread safe.
+ */
+public class CharArena {
+
+  /**
+   * Construct an arena with the default chunk size.
+   */
+  public CharArena() {
+    this(DEFAULT_CHUNK_SIZE);
+  }
+
+  /**
+   * Construct an arena.
+   *
+   * @param chunkSize the number of characters per chunk.
+   */
+  public CharArena(int chunkSize) {
+    if (chunkSize < 1)
+      throw new IllegalArgumentException("Chunk size must be positive");
+    this.chunkSize = chunkSize;
+    chunk = new char[chunkSize];
+  }
+
+  /**
+   * Copy the characters into the arena.
+   *
+   * @param s the characters to copy.
+   * @return a view of the copied characters.
+   */
+  public MyString allocate(CharSequence s) {
+    int length = s.length();
+    char[] target = reserve(length);
+    int start = target == chunk ? used - length : 0;
+    if (s instanceof String)
+      ((String) s).getChars(0, length, target, start);
+    else
+      for (int i = 0; i < length; i++)
+        target[start + i] = s.charAt(i);
+    return new MyString(target, start, length);
+  }
+
+  /**
+   * Copy a range of a char array into the arena.
+   *
+   * @param src  the source array.
+   * @param from the first index to copy.
+   * @param to   the index after the last one to copy.
+   * @return a view of the copied characters.
+   */
+  public MyString allocate(char[] src, int from, int to) {
+    int length = to - from;
+    char[] target = reserve(length);
+    int start = target == chunk ? used - length : 0;
+    System.arraycopy(src, from, target, start, length);
+    return new MyString(target, start, length);
+  }
+
+  /**
+   * Get the number of characters allocated so far.
+   *
+   * @return the number of characters.
+   */
+  public long allocated() {
+    return allocated;
+  }
+
+  /**
+   * Reserve room for length characters. Strings longer than a chunk get an
+   * array of their own so that they never waste the rest of a chunk.
+   */
+  private char[] reserve(int length) {
+    allocated += length;
+    if (length > chunkSize)
+      return new char[length];
+    if (chunkSize - used < length) {
+      chunk = new char[chunkSize];
+      used = 0;
+    }
+    used += length;
+    return chunk;
+  }
+
+  private static final int DEFAULT_CHUNK_SIZE = 1 << 16;
+
+  private final int chunkSize;
+  private char[] chunk; // The chunk currently being filled
+  private int used; // Characters used in chunk
+  private long allocated; // Characters allocated in total
+
+}
@@ -0,0 +1,52 @@
+package alda;
+
+public class DoubleHashingProbingHashMap<K, V> extends ProbingHashMap<K, V> {
+
+  private int primeCapacity; // the capacity r was computed for
+  private int r; // prime smaller than the capacity
+
+  public DoubleHashingProbingHashMap() {
+    super();
+  }
+
+  public DoubleHashingProbingHashMap(int size) {
+    super(size);
+  }
+
+  /*
+   * Same probing as DoubleHashingProbingHashTable, f(i) = i * hash2(x), but
+   * hash2 is computed once per search instead of once per probe.
+   */
+  @Override
+  protected int findPos(K key) {
+    int home = myhash(key);
+    int currentPos = home;
+    if (!continueProbing(currentPos, key))
+      return currentPos;
+
+    int step = hash2(home);
+    int i = 0;
+    while (continueProbing(currentPos, key)) {
+      i++;
+      currentPos = (int) ((home + (long) i * step) % capacity());
+    }
+    return currentPos;
+  }
+
+  private int hash2(int home) {
+    if (primeCapacity != capacity()) {
+      r = smallerPrimeThanCapacity();
+      primeCapacity = capacity();
+    }
+    return r - (home % r);
+  }
+
+  protected int smallerPrimeThanCapacity() {
+    int n = capacity() - 2;
+    while (!ProbingHashTable.isPrime(n)) {
+      n -= 2;
+    }
+    return n;
+  }
+
+}
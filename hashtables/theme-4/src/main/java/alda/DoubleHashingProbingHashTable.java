@@ -2,6 +2,14 @@ package alda;
 
 public class DoubleHashingProbingHashTable<T> extends ProbingHashTable<T> {
 
+  public DoubleHashingProbingHashTable() {
+    super();
+  }
+
+  public DoubleHashingProbingHashTable(int size) {
+    super(size);
+  }
+
   /*
    * Denna metod ska skrivas klart. Den ska använda bokens förslag på andra
    * hashalgoritm: f(i) = i * hash2(x), där hash2(x) = R - (x mod R) och R är
@@ -0,0 +1,263 @@
+package alda;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Measures the quality of a hash function on a sample of keys, generalized
+ * from BookHashTest. The analysis covers
+ *
+ * - collisions between distinct keys compared to an ideal random 32-bit hash,
+ * - a chi-squared test of the distribution over a number of buckets,
+ * - the probe lengths our three findPos strategies would see, by replaying
+ * them over the hash codes, compared to the ideal uniform hashing model,
+ * - optionally the avalanche behaviour, given a way to flip input bits.
+ *
+ * Hashing, bucket counting and the probe simulations run in parallel, so
+ * millions of keys can be analyzed. The hash function must be thread safe.
+ */
+public class HashQualityAnalyzer<T> {
+
+  /**
+   * Flips single input bits of a key, used for the avalanche test.
+   */
+  public interface BitFlipper<T> {
+    /**
+     * @return the number of input bits of the key that can be flipped.
+     */
+    int bits(T key);
+
+    /**
+     * @return a copy of the key with the given input bit flipped.
+     */
+    T flip(T key, int bit);
+  }
+
+  /**
+   * Construct an analyzer.
+   *
+   * @param hash the hash function to analyze, for example Book::hashCode.
+   */
+  public HashQualityAnalyzer(ToIntFunction<? super T> hash) {
+    this(hash, DEFAULT_BUCKETS, DEFAULT_LOAD_FACTOR);
+  }
+
+  /**
+   * Construct an analyzer.
+   *
+   * @param hash       the hash function to analyze.
+   * @param buckets    the number of buckets for the chi-squared test.
+   * @param loadFactor the load factor of the simulated probing tables, at most
+   *                   0.5 like ProbingHashTable.
+   */
+  public HashQualityAnalyzer(ToIntFunction<? super T> hash, int buckets, double loadFactor) {
+    if (buckets < 2)
+      throw new IllegalArgumentException("At least two buckets are needed");
+    if (!(loadFactor > 0 && loadFactor <= 0.5))
+      throw new IllegalArgumentException("Load factor must be in (0, 0.5]");
+    this.hash = hash;
+    this.buckets = buckets;
+    this.loadFactor = loadFactor;
+  }
+
+  /**
+   * Enable the avalanche test.
+   *
+   * @param flipper flips input bits of a key.
+   * @param samples the number of keys to flip bits in.
+   */
+  public void setAvalanche(BitFlipper<T> flipper, int samples) {
+    this.flipper = flipper;
+    this.avalancheSamples = samples;
+  }
+
+  /**
+   * Analyze the hash function. Equal keys are counted once.
+   *
+   * @param keys the sample of keys.
+   * @return the report.
+   */
+  public HashQualityReport analyze(List<? extends T> keys) {
+    List<T> distinctKeys = keys.parallelStream().distinct().collect(Collectors.toList());
+    int n = distinctKeys.size();
+
+    int[] hashes = new int[n];
+    IntStream.range(0, n).parallel().forEach(i -> hashes[i] = hash.applyAsInt(distinctKeys.get(i)));
+
+    HashQualityReport report = new HashQualityReport();
+    report.keys = keys.size();
+    report.distinctKeys = n;
+    collisions(hashes, report);
+    chiSquared(hashes, report);
+    report.probes = Stream.of(Strategy.values()).parallel()
+        .map(s -> simulate(s, hashes))
+        .toArray(HashQualityReport.ProbeStats[]::new);
+    if (flipper != null && n > 0)
+      avalanche(distinctKeys, report);
+    return report;
+  }
+
+  private static void collisions(int[] hashes, HashQualityReport report) {
+    int[] sorted = hashes.clone();
+    Arrays.parallelSort(sorted);
+    long distinctHashes = 0;
+    long largest = 0;
+    long run = 0;
+    for (int i = 0; i < sorted.length; i++) {
+      if (i == 0 || sorted[i] != sorted[i - 1]) {
+        distinctHashes++;
+        run = 0;
+      }
+      largest = Math.max(largest, ++run);
+    }
+    double m = Math.pow(2, 32);
+    double n = hashes.length;
+    report.distinctHashes = distinctHashes;
+    report.collisions = hashes.length - distinctHashes;
+    report.largestCollisionGroup = largest;
+    // Expected collisions: n minus the expected distinct values, m(1 - e^(-n/m)),
+    // when drawing n uniform 32-bit hashes
+    report.expectedCollisions = n - m * -Math.expm1(-n / m);
+  }
+
+  private void chiSquared(int[] hashes, HashQualityReport report) {
+    long[] counts = IntStream.range(0, hashes.length).parallel().collect(
+        () -> new long[buckets],
+        (acc, i) -> acc[Math.floorMod(hashes[i], buckets)]++,
+        (a, b) -> {
+          for (int i = 0; i < a.length; i++)
+            a[i] += b[i];
+        });
+    double expected = (double) hashes.length / buckets;
+    double chiSquared = 0;
+    for (long observed : counts) {
+      double diff = observed - expected;
+      chiSquared += diff * diff / expected;
+    }
+    int degreesOfFreedom = buckets - 1;
+    report.buckets = buckets;
+    report.chiSquared = chiSquared;
+    report.chiSquaredZ = (chiSquared - degreesOfFreedom) / Math.sqrt(2.0 * degreesOfFreedom);
+  }
+
+  /**
+   * The probe sequences of LinearProbingHashTable, QuadraticProbingHashTable
+   * and DoubleHashingProbingHashTable, with home position hash mod size.
+   */
+  enum Strategy {
+    LINEAR, QUADRATIC, DOUBLE_HASHING
+  }
+
+  private HashQualityReport.ProbeStats simulate(Strategy strategy, int[] hashes) {
+    int size = nextPrime((int) Math.min(Integer.MAX_VALUE - 8, Math.ceil(hashes.length / loadFactor) + 1));
+    int r = size - 2;
+    while (!ProbingHashTable.isPrime(r))
+      r -= 2;
+
+    boolean[] used = new boolean[size];
+    long total = 0;
+    long max = 0;
+    for (int h : hashes) {
+      int home = Math.floorMod(h, size);
+      int currentPos = home;
+      long probes = 1;
+      int offset = 1;
+      int step = r - (home % r);
+      while (used[currentPos]) {
+        probes++;
+        switch (strategy) {
+          case LINEAR:
+            currentPos++;
+            break;
+          case QUADRATIC:
+            currentPos += offset;
+            offset += 2;
+            break;
+          default:
+            currentPos += step;
+        }
+        if (currentPos >= size)
+          currentPos %= size;
+      }
+      used[currentPos] = true;
+      total += probes;
+      max = Math.max(max, probes);
+    }
+
+    HashQualityReport.ProbeStats stats = new HashQualityReport.ProbeStats();
+    stats.strategy = strategy.name();
+    stats.tableSize = size;
+    double alpha = (double) hashes.length / size;
+    stats.loadFactor = alpha;
+    stats.meanProbes = hashes.length == 0 ? 0 : (double) total / hashes.length;
+    stats.maxProbes = max;
+    // Successful search in the ideal model: Knuth for linear probing, uniform
+    // hashing for the others
+    if (alpha == 0)
+      stats.idealMeanProbes = 1;
+    else if (strategy == Strategy.LINEAR)
+      stats.idealMeanProbes = 0.5 * (1 + 1 / (1 - alpha));
+    else
+      stats.idealMeanProbes = -Math.log(1 - alpha) / alpha;
+    return stats;
+  }
+
+  private void avalanche(List<T> keys, HashQualityReport report) {
+    int samples = Math.min(avalancheSamples, keys.size());
+    Random rnd = new Random(42);
+    int[] sampled = rnd.ints(samples, 0, keys.size()).toArray();
+
+    // flips[o] counts how often output bit o changed, over all input bit flips
+    long[] flips = IntStream.of(sampled).parallel().collect(
+        () -> new long[33],
+        (acc, i) -> {
+          T key = keys.get(i);
+          int h = hash.applyAsInt(key);
+          int bits = flipper.bits(key);
+          for (int b = 0; b < bits; b++) {
+            int diff = h ^ hash.applyAsInt(flipper.flip(key, b));
+            for (int o = 0; o < 32; o++)
+              acc[o] += (diff >>> o) & 1;
+            acc[32]++;
+          }
+        },
+        (a, b) -> {
+          for (int i = 0; i < a.length; i++)
+            a[i] += b[i];
+        });
+
+    long trials = flips[32];
+    double sum = 0;
+    double worst = 0;
+    for (int o = 0; o < 32; o++) {
+      double p = trials == 0 ? 0 : (double) flips[o] / trials;
+      sum += p;
+      worst = Math.max(worst, Math.abs(p - 0.5));
+    }
+    report.avalancheMean = sum / 32;
+    report.avalancheWorstBias = worst;
+  }
+
+  private static int nextPrime(int n) {
+    if (n % 2 == 0)
+      n++;
+    for (; !ProbingHashTable.isPrime(n); n += 2)
+      ;
+    return n;
+  }
+
+  private static final int DEFAULT_BUCKETS = 1009;
+  private static final double DEFAULT_LOAD_FACTOR = 0.5;
+
+  private final ToIntFunction<? super T> hash;
+  private final int buckets;
+  private final double loadFactor;
+  private BitFlipper<T> flipper;
+  private int avalancheSamples;
+
+}
@@ -0,0 +1,150 @@
+package alda;
+
+import java.util.Locale;
+
+/**
+ * Result of a HashQualityAnalyzer run. toJson gives a machine-readable form
+ * and passes applies fixed thresholds meant to stop clearly bad hash functions.
+ */
+public class HashQualityReport {
+
+  /**
+   * Probe lengths of one findPos strategy.
+   */
+  public static class ProbeStats {
+    String strategy;
+    int tableSize;
+    double loadFactor;
+    double meanProbes;
+    long maxProbes;
+    double idealMeanProbes;
+
+    public String strategy() {
+      return strategy;
+    }
+
+    public double meanProbes() {
+      return meanProbes;
+    }
+
+    public long maxProbes() {
+      return maxProbes;
+    }
+
+    public double idealMeanProbes() {
+      return idealMeanProbes;
+    }
+
+    String toJson() {
+      return String.format(Locale.ROOT,
+          "{\"strategy\":\"%s\",\"tableSize\":%d,\"loadFactor\":%.4f,\"meanProbes\":%.4f,"
+              + "\"maxProbes\":%d,\"idealMeanProbes\":%.4f}",
+          strategy, tableSize, loadFactor, meanProbes, maxProbes, idealMeanProbes);
+    }
+  }
+
+  long keys;
+  long distinctKeys;
+  long distinctHashes;
+  long collisions;
+  long largestCollisionGroup;
+  double expectedCollisions;
+  int buckets;
+  double chiSquared;
+  double chiSquaredZ;
+  ProbeStats[] probes;
+  double avalancheMean = Double.NaN;
+  double avalancheWorstBias = Double.NaN;
+
+  public long distinctKeys() {
+    return distinctKeys;
+  }
+
+  public long collisions() {
+    return collisions;
+  }
+
+  public double expectedCollisions() {
+    return expectedCollisions;
+  }
+
+  public double chiSquared() {
+    return chiSquared;
+  }
+
+  /**
+   * The chi-squared statistic normalized to a standard normal variable, so
+   * values above 3 are very unlikely for a uniform hash.
+   */
+  public double chiSquaredZ() {
+    return chiSquaredZ;
+  }
+
+  public ProbeStats[] probes() {
+    return probes.clone();
+  }
+
+  /**
+   * @return the mean probability that an output bit flips when one input bit
+   *         flips, ideally 0.5, or NaN if not measured.
+   */
+  public double avalancheMean() {
+    return avalancheMean;
+  }
+
+  /**
+   * @return the largest distance from 0.5 of any output bit's flip
+   *         probability, or NaN if not measured.
+   */
+  public double avalancheWorstBias() {
+    return avalancheWorstBias;
+  }
+
+  /**
+   * Check the report against fixed thresholds: collisions at most twice the
+   * ideal plus some slack, a chi-squared z-score below 4, mean probe lengths
+   * at most twice the ideal, and if measured an avalanche bias below 0.25.
+   *
+   * @return true if no threshold is exceeded.
+   */
+  public boolean passes() {
+    if (collisions > 2 * expectedCollisions + 3 * Math.sqrt(expectedCollisions) + 2)
+      return false;
+    if (chiSquaredZ > 4)
+      return false;
+    for (ProbeStats stats : probes)
+      if (stats.meanProbes > 2 * stats.idealMeanProbes)
+        return false;
+    return !(avalancheWorstBias >= 0.25);
+  }
+
+  public String toJson() {
+    StringBuilder sb = new StringBuilder();
+    sb.append(String.format(Locale.ROOT,
+        "{\"keys\":%d,\"distinctKeys\":%d,\"distinctHashes\":%d,\"collisions\":%d,"
+            + "\"largestCollisionGroup\":%d,\"expectedCollisions\":%.4f,\"buckets\":%d,"
+            + "\"chiSquared\":%.4f,\"chiSquaredZ\":%.4f,",
+        keys, distinctKeys, distinctHashes, collisions, largestCollisionGroup, expectedCollisions, buckets,
+        chiSquared, chiSquaredZ));
+    sb.append("\"avalancheMean\":").append(jsonNumber(avalancheMean));
+    sb.append(",\"avalancheWorstBias\":").append(jsonNumber(avalancheWorstBias));
+    sb.append(",\"probes\":[");
+    for (int i = 0; i < probes.length; i++) {
+      if (i > 0)
+        sb.append(',');
+      sb.append(probes[i].toJson());
+    }
+    sb.append("],\"passes\":").append(passes()).append('}');
+    return sb.toString();
+  }
+
+  @Override
+  public String toString() {
+    return toJson();
+  }
+
+  private static String jsonNumber(double value) {
+    return Double.isNaN(value) ? "null" : String.format(Locale.ROOT, "%.4f", value);
+  }
+
+}
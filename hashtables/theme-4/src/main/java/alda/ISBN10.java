@@ -10,19 +10,42 @@ public class ISBN10 {
   public ISBN10(String isbn) {
     if (isbn.length() != 10)
       throw new IllegalArgumentException("Wrong length, must be 10");
-    if (!checkDigit(isbn))
-      throw new IllegalArgumentException("Not a valid isbn 10");
     this.isbn = isbn.toCharArray();
+    if (!isValid(this.isbn, 0))
+      throw new IllegalArgumentException("Not a valid isbn 10");
   }
 
-  private boolean checkDigit(String isbn) {
+  /**
+   * Construct from 10 characters of a larger array, for parsers that never
+   * create a String.
+   */
+  public ISBN10(char[] chars, int offset) {
+    if (chars.length - offset < 10)
+      throw new IllegalArgumentException("Wrong length, must be 10");
+    if (!isValid(chars, offset))
+      throw new IllegalArgumentException("Not a valid isbn 10");
+    this.isbn = Arrays.copyOfRange(chars, offset, offset + 10);
+  }
+
+  /*
+   * Kontrollerar nio siffror och en kontrollsiffra (0-9 eller X) så att den
+   * viktade summan blir delbar med 11. Varje tecken som inte är en siffra gör
+   * d eller 9 - d negativt, så felen samlas i teckenbiten på bad i stället för
+   * att varje tecken kräver en egen gren.
+   */
+  public static boolean isValid(char[] chars, int offset) {
     int sum = 0;
+    int bad = 0;
     for (int i = 0; i < 9; i++) {
-      sum += Character.getNumericValue(isbn.charAt(i)) * (10 - i);
+      int d = chars[offset + i] - '0';
+      bad |= d | (9 - d);
+      sum += d * (10 - i);
     }
-    int checkDigit = (11 - (sum % 11)) % 11;
-
-    return isbn.endsWith(checkDigit == 10 ? "X" : "" + checkDigit);
+    char last = chars[offset + 9];
+    int d = last - '0';
+    int check = last == 'X' ? 10 : d;
+    bad |= last == 'X' ? 0 : d | (9 - d);
+    return bad >= 0 && (sum + check) % 11 == 0;
   }
 
   @Override
@@ -0,0 +1,251 @@
+package alda;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Inverted full-text index over the content of books. The content is split
+ * into terms (maximal runs of letters and digits, lower-cased), every term is
+ * interned once in a CharArena and the term dictionary is a
+ * QuadraticProbingHashMap from term to PostingList.
+ *
+ * Books get increasing document ids, which keeps every posting list sorted so
+ * that queries only merge the posting lists of the query terms. The cost of a
+ * query therefore depends on how many books contain the terms, not on the
+ * total size of the indexed content.
+ *
+ * A removed book leaves an unused id behind, and a replaced book gets a new
+ * one. Once the unused ids are more than half of the id table, the remaining
+ * books are renumbered in the order they were added. The posting lists stay
+ * sorted, and the ids stay bounded by the number of books, however many
+ * times books are replaced.
+ */
+public class InvertedIndex {
+
+  /**
+   * Add a book to the index. A book with the same ISBN is replaced.
+   *
+   * @param book the book to add.
+   */
+  public void add(Book book) {
+    remove(book.getIsbn());
+
+    int docId = nextDocId++;
+    if (docId == books.length)
+      books = Arrays.copyOf(books, books.length * 2);
+    books[docId] = book;
+    docIds.put(book.getIsbn(), docId);
+    size++;
+
+    forEachTerm(book.getContent(), (term, length) -> {
+      PostingList postings = terms.get(new MyString(term, 0, length));
+      if (postings == null) {
+        postings = new PostingList();
+        terms.put(termChars.allocate(term, 0, length), postings);
+      }
+      if (postings.last() != docId)
+        postings.add(docId);
+    });
+  }
+
+  /**
+   * Remove a book from the index.
+   *
+   * @param isbn the ISBN of the book to remove.
+   * @return true if the book was indexed.
+   */
+  public boolean remove(ISBN10 isbn) {
+    Integer removed = docIds.remove(isbn);
+    if (removed == null)
+      return false;
+    int docId = removed;
+
+    MyString content = books[docId].getContent();
+    books[docId] = null;
+    size--;
+
+    forEachTerm(content, (term, length) -> {
+      MyString key = new MyString(term, 0, length);
+      PostingList postings = terms.get(key);
+      if (postings != null && postings.remove(docId) && postings.size() == 0)
+        terms.remove(key);
+    });
+    if (nextDocId - size > books.length / 2)
+      compact();
+    return true;
+  }
+
+  /**
+   * Find the books whose content contains every term.
+   *
+   * @param queryTerms the terms, matched case-insensitively.
+   * @return the matching books in the order they were added.
+   */
+  public List<Book> and(String... queryTerms) {
+    if (queryTerms.length == 0)
+      return new ArrayList<>();
+
+    PostingList[] lists = new PostingList[queryTerms.length];
+    for (int i = 0; i < queryTerms.length; i++) {
+      lists[i] = postings(queryTerms[i]);
+      if (lists[i] == null)
+        return new ArrayList<>();
+    }
+    // Start with the shortest list so the intermediate result stays small
+    Arrays.sort(lists, (a, b) -> Integer.compare(a.size(), b.size()));
+
+    int[] result = lists[0].toArray();
+    int resultSize = result.length;
+    for (int i = 1; i < lists.length && resultSize > 0; i++) {
+      int[] other = lists[i].toArray();
+      int kept = 0;
+      for (int a = 0, b = 0; a < resultSize && b < other.length;) {
+        if (result[a] < other[b])
+          a++;
+        else if (result[a] > other[b])
+          b++;
+        else {
+          result[kept++] = result[a];
+          a++;
+          b++;
+        }
+      }
+      resultSize = kept;
+    }
+    return toBooks(result, resultSize);
+  }
+
+  /**
+   * Find the books whose content contains at least one of the terms.
+   *
+   * @param queryTerms the terms, matched case-insensitively.
+   * @return the matching books in the order they were added.
+   */
+  public List<Book> or(String... queryTerms) {
+    List<int[]> lists = new ArrayList<>(queryTerms.length);
+    int total = 0;
+    for (String queryTerm : queryTerms) {
+      PostingList list = postings(queryTerm);
+      if (list != null && list.size() > 0) {
+        lists.add(list.toArray());
+        total += list.size();
+      }
+    }
+
+    // One k-way merge, with a heap of list cursors ordered by their next id
+    int[] position = new int[lists.size()];
+    PriorityQueue<Integer> cursors = new PriorityQueue<>(Math.max(1, lists.size()),
+        (a, b) -> Integer.compare(lists.get(a)[position[a]], lists.get(b)[position[b]]));
+    for (int i = 0; i < lists.size(); i++)
+      cursors.add(i);
+    int[] result = new int[total];
+    int size = 0;
+    while (!cursors.isEmpty()) {
+      int i = cursors.poll();
+      int docId = lists.get(i)[position[i]++];
+      if (size == 0 || result[size - 1] != docId)
+        result[size++] = docId;
+      if (position[i] < lists.get(i).length)
+        cursors.add(i);
+    }
+    return toBooks(result, size);
+  }
+
+  /**
+   * Get the number of indexed books.
+   *
+   * @return the number of books.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Get the number of distinct terms.
+   *
+   * @return the number of terms in the dictionary.
+   */
+  public int termCount() {
+    return terms.size();
+  }
+
+  int idCapacity() {
+    return books.length;
+  }
+
+  /**
+   * Give the remaining books the ids 0 to size - 1 in their current order.
+   * The dictionary cannot be iterated, so the posting lists are reached
+   * through the terms of the books: every list holds only ids of remaining
+   * books, so emptying the lists of their terms empties all of them.
+   */
+  private void compact() {
+    int live = 0;
+    for (int docId = 0; docId < nextDocId; docId++)
+      if (books[docId] != null)
+        books[live++] = books[docId];
+    Arrays.fill(books, live, nextDocId, null);
+    nextDocId = live;
+
+    for (int docId = 0; docId < live; docId++)
+      forEachTerm(books[docId].getContent(),
+          (term, length) -> terms.get(new MyString(term, 0, length)).makeEmpty());
+    for (int docId = 0; docId < live; docId++) {
+      int newId = docId;
+      docIds.put(books[docId].getIsbn(), newId);
+      forEachTerm(books[docId].getContent(), (term, length) -> {
+        PostingList postings = terms.get(new MyString(term, 0, length));
+        if (postings.last() != newId)
+          postings.add(newId);
+      });
+    }
+  }
+
+  private interface TermVisitor {
+    void visit(char[] term, int length);
+  }
+
+  /**
+   * Split the content into lower-cased terms. The term buffer is reused, so the
+   * visitor must copy a term it wants to keep.
+   */
+  private static void forEachTerm(MyString content, TermVisitor visitor) {
+    char[] term = new char[16];
+    int length = 0;
+    for (int i = 0; i <= content.length(); i++) {
+      char c = i < content.length() ? content.charAt(i) : ' ';
+      if (Character.isLetterOrDigit(c)) {
+        if (length == term.length)
+          term = Arrays.copyOf(term, length * 2);
+        term[length++] = Character.toLowerCase(c);
+      } else if (length > 0) {
+        visitor.visit(term, length);
+        length = 0;
+      }
+    }
+  }
+
+  private PostingList postings(String queryTerm) {
+    char[] term = new char[queryTerm.length()];
+    for (int i = 0; i < term.length; i++)
+      term[i] = Character.toLowerCase(queryTerm.charAt(i));
+    return terms.get(new MyString(term, 0, term.length));
+  }
+
+  private List<Book> toBooks(int[] ids, int count) {
+    List<Book> result = new ArrayList<>(count);
+    for (int i = 0; i < count; i++)
+      result.add(books[ids[i]]);
+    return result;
+  }
+
+  private final ProbingHashMap<MyString, PostingList> terms = new QuadraticProbingHashMap<>();
+  private final CharArena termChars = new CharArena();
+  private final ProbingHashMap<ISBN10, Integer> docIds = new QuadraticProbingHashMap<>();
+  private Book[] books = new Book[16]; // Indexed by document id
+  private int nextDocId;
+  private int size;
+
+}
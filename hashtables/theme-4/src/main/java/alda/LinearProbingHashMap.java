@@ -0,0 +1,27 @@
+package alda;
+
+public class LinearProbingHashMap<K, V> extends ProbingHashMap<K, V> {
+
+  public LinearProbingHashMap() {
+    super();
+  }
+
+  public LinearProbingHashMap(int size) {
+    super(size);
+  }
+
+  /*
+   * Same linear probing as LinearProbingHashTable.
+   */
+  @Override
+  protected int findPos(K key) {
+    int currentPos = myhash(key);
+    while (continueProbing(currentPos, key)) {
+      currentPos++;
+      if (currentPos >= capacity())
+        currentPos -= capacity();
+    }
+    return currentPos;
+  }
+
+}
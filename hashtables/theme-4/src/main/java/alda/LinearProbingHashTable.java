@@ -2,6 +2,14 @@ package alda;
 
 public class LinearProbingHashTable<T> extends ProbingHashTable<T> {
 
+  public LinearProbingHashTable() {
+    super();
+  }
+
+  public LinearProbingHashTable(int size) {
+    super(size);
+  }
+
   /*
    * Denna metod ska skrivas klart. Den ska använda linjär sondering och hela
    * tiden öka med ett.
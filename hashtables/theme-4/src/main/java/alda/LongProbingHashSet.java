@@ -0,0 +1,151 @@
+package alda;
+
+import java.util.Arrays;
+
+/**
+ * Set of long values in a single long[] with linear probing, for keys such as
+ * fingerprints where boxing every key into a ProbingHashTable would cost
+ * several times the memory of the key itself. An empty slot is marked by 0,
+ * so the value 0 is kept in a separate flag. There are no removes and thus no
+ * deleted slots.
+ *
+ * The table size is a power of two and the probe starts at the high bits of
+ * the key multiplied by the golden ratio, so keys that are already well mixed
+ * and keys that are not both spread over the table.
+ */
+public class LongProbingHashSet {
+
+  /**
+   * Construct the set.
+   */
+  public LongProbingHashSet() {
+    this(DEFAULT_TABLE_SIZE);
+  }
+
+  /**
+   * Construct the set.
+   *
+   * @param size the approximate initial size, rounded up to a power of two.
+   */
+  public LongProbingHashSet(int size) {
+    if (size < 0 || size > MAXIMUM_TABLE_SIZE)
+      throw new IllegalArgumentException("Illegal size: " + size);
+    allocateArray(Math.max(2, size));
+  }
+
+  /**
+   * Insert into the set. If the value is already present, do nothing.
+   *
+   * @param x the value to insert.
+   * @return true if the value was inserted.
+   */
+  public boolean add(long x) {
+    if (x == 0) {
+      if (containsZero)
+        return false;
+      containsZero = true;
+      theSize++;
+      return true;
+    }
+
+    int currentPos = findPos(x);
+    if (array[currentPos] == x)
+      return false;
+
+    array[currentPos] = x;
+    // Rehash; see Section 5.5
+    if (++theSize * 2 > array.length)
+      rehash();
+    return true;
+  }
+
+  /**
+   * Find a value in the set.
+   *
+   * @param x the value to search for.
+   * @return true if the value is present.
+   */
+  public boolean contains(long x) {
+    if (x == 0)
+      return containsZero;
+    return array[findPos(x)] == x;
+  }
+
+  /**
+   * Get the number of values in the set.
+   *
+   * @return the size.
+   */
+  public int size() {
+    return theSize;
+  }
+
+  /**
+   * Get the length of the underlying array.
+   *
+   * @return the number of slots.
+   */
+  public int capacity() {
+    return array.length;
+  }
+
+  /**
+   * Make the set logically empty, keeping its capacity.
+   */
+  public void makeEmpty() {
+    Arrays.fill(array, 0);
+    containsZero = false;
+    theSize = 0;
+  }
+
+  /**
+   * Get the number of bytes needed for a set that holds the given number of
+   * values without growing.
+   *
+   * @param values the number of values.
+   * @return the size of the long[] in bytes.
+   */
+  public static long bytesFor(long values) {
+    return 8L * tableSizeFor(2 * values + 1);
+  }
+
+  private int findPos(long x) {
+    int currentPos = (int) ((x * GOLDEN_RATIO) >>> shift);
+    while (array[currentPos] != 0 && array[currentPos] != x)
+      currentPos = (currentPos + 1) & mask;
+    return currentPos;
+  }
+
+  private void rehash() {
+    long[] oldArray = array;
+    if (oldArray.length > MAXIMUM_TABLE_SIZE / 2)
+      throw new IllegalStateException("Set is too large: " + theSize);
+
+    allocateArray(2 * oldArray.length);
+    for (long x : oldArray)
+      if (x != 0)
+        array[findPos(x)] = x;
+  }
+
+  private void allocateArray(int size) {
+    int length = (int) tableSizeFor(size);
+    array = new long[length];
+    mask = length - 1;
+    shift = 64 - Integer.numberOfTrailingZeros(length);
+  }
+
+  private static long tableSizeFor(long size) {
+    return size <= 2 ? 2 : Long.highestOneBit(size - 1) << 1;
+  }
+
+  private static final int DEFAULT_TABLE_SIZE = 16;
+  private static final int MAXIMUM_TABLE_SIZE = 1 << 30;
+  private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+
+  private long[] array; // The slots, 0 when empty
+  private int mask;
+  private int shift; // 64 - log2(array.length)
+  private boolean containsZero;
+  private int theSize;
+
+}
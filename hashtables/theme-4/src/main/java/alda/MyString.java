@@ -2,22 +2,42 @@ package alda;
 
 import java.util.Arrays;
 
+/*
+ * En MyString är en vy (chars, offset, length) över en char-array. Skapas den
+ * från en String äger den sin egen array, skapas den via en CharArena delar den
+ * en stor array med många andra strängar. Hashkod och equals räknas direkt på
+ * tecknen i vyn och ger samma värden oavsett var tecknen ligger.
+ */
 public class MyString {
 
-  private char[] data;
-  private final int primeHash = 17;
+  private final char[] chars;
+  private final int offset;
+  private final int length;
+  private static final int primeHash = 17;
 
   public MyString(String title) {
-    data = title.toCharArray();
+    this(title.toCharArray(), 0, title.length());
+  }
+
+  MyString(char[] chars, int offset, int length) {
+    this.chars = chars;
+    this.offset = offset;
+    this.length = length;
   }
 
   public int length() {
-    return data.length;
+    return length;
+  }
+
+  public char charAt(int index) {
+    if (index < 0 || index >= length)
+      throw new IndexOutOfBoundsException(index);
+    return chars[offset + index];
   }
 
   @Override
   public String toString() {
-    return new String(data);
+    return new String(chars, offset, length);
   }
 
   @Override
@@ -27,14 +47,15 @@ public class MyString {
     if (!(o instanceof MyString))
       return false;
     MyString other = (MyString) o;
-    return Arrays.equals(data, other.data);
+    return Arrays.equals(chars, offset, offset + length,
+        other.chars, other.offset, other.offset + other.length);
   }
 
   @Override
   public int hashCode() {
     int hash = primeHash;
-    for (char c : data) {
-      hash = (hash * primeHash) + c;
+    for (int i = offset, end = offset + length; i < end; i++) {
+      hash = (hash * primeHash) + chars[i];
     }
     return hash;
   }
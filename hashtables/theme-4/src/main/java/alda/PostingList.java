@@ -0,0 +1,166 @@
+package alda;
+
+import java.util.Arrays;
+
+/**
+ * Sorted list of document ids stored as variable-length encoded deltas. Ids
+ * must be added in increasing order, which is how InvertedIndex hands them
+ * out, so appending never needs to re-encode the list.
+ */
+public class PostingList {
+
+  /**
+   * Append a document id.
+   *
+   * @param docId the id, larger than every id already in the list.
+   */
+  public void add(int docId) {
+    if (docId <= last)
+      throw new IllegalArgumentException("Ids must be added in increasing order");
+    if (data.length - length < MAX_VARINT_BYTES)
+      data = Arrays.copyOf(data, data.length * 2);
+    length = writeVarint(data, length, docId - last);
+    last = docId;
+    count++;
+  }
+
+  /**
+   * Remove a document id. The tail of the list after the id is re-encoded.
+   *
+   * @param docId the id to remove.
+   * @return true if the id was present.
+   */
+  public boolean remove(int docId) {
+    if (docId > last)
+      return false;
+
+    int pos = 0;
+    int previous = -1;
+    while (pos < length) {
+      int start = pos;
+      int value = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = data[pos++];
+        value |= (b & 0x7F) << shift;
+        shift += 7;
+      } while (b < 0);
+      int current = previous + value;
+
+      if (current == docId) {
+        count--;
+        if (pos == length) {
+          length = start;
+          last = previous;
+        } else {
+          // Merge the deltas on both sides of the removed id
+          int next = 0;
+          shift = 0;
+          int end = pos;
+          do {
+            b = data[end++];
+            next |= (b & 0x7F) << shift;
+            shift += 7;
+          } while (b < 0);
+          int mergedLength = varintLength(value + next);
+          int tail = length - end;
+          System.arraycopy(data, end, data, start + mergedLength, tail);
+          writeVarint(data, start, value + next);
+          length = start + mergedLength + tail;
+        }
+        return true;
+      }
+      if (current > docId)
+        return false;
+      previous = current;
+    }
+    return false;
+  }
+
+  /**
+   * Remove all ids. The encoding buffer is kept.
+   */
+  public void makeEmpty() {
+    length = 0;
+    count = 0;
+    last = -1;
+  }
+
+  /**
+   * Get the number of ids.
+   *
+   * @return the number of ids.
+   */
+  public int size() {
+    return count;
+  }
+
+  /**
+   * Get the largest id in the list.
+   *
+   * @return the last id, or -1 if empty.
+   */
+  public int last() {
+    return last;
+  }
+
+  /**
+   * Get the encoded size.
+   *
+   * @return the number of bytes used by the encoded deltas.
+   */
+  public int encodedBytes() {
+    return length;
+  }
+
+  /**
+   * Decode the ids.
+   *
+   * @return the ids in increasing order.
+   */
+  public int[] toArray() {
+    int[] ids = new int[count];
+    int pos = 0;
+    int current = -1;
+    for (int i = 0; i < count; i++) {
+      int value = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = data[pos++];
+        value |= (b & 0x7F) << shift;
+        shift += 7;
+      } while (b < 0);
+      current += value;
+      ids[i] = current;
+    }
+    return ids;
+  }
+
+  private static int writeVarint(byte[] target, int pos, int value) {
+    while ((value & ~0x7F) != 0) {
+      target[pos++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    target[pos++] = (byte) value;
+    return pos;
+  }
+
+  private static int varintLength(int value) {
+    int bytes = 1;
+    while ((value & ~0x7F) != 0) {
+      bytes++;
+      value >>>= 7;
+    }
+    return bytes;
+  }
+
+  private static final int MAX_VARINT_BYTES = 5;
+
+  private byte[] data = new byte[8];
+  private int length; // Bytes used in data
+  private int count; // Number of ids
+  private int last = -1; // Largest id
+
+}
@@ -0,0 +1,161 @@
+package alda;
+
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * Cache with a fixed maximum number of entries on top of a ProbingHashMap.
+ * The map is sized once so that it never has to grow, and when the cache is
+ * full an entry is evicted with the CLOCK algorithm: a hand sweeps the slot
+ * array, clearing the reference bit of recently used entries and evicting the
+ * first entry whose bit is already clear. The reference bits live in the
+ * slot state array of the map, so they cost no extra memory.
+ *
+ * A cache is not thread safe.
+ */
+public class ProbingHashCache<K, V> {
+
+  /**
+   * Construct a cache backed by a QuadraticProbingHashMap.
+   *
+   * @param maxSize the maximum number of entries.
+   * @param loader  computes the value on a miss, or null to only cache values
+   *                that are put.
+   */
+  public ProbingHashCache(int maxSize, Function<? super K, ? extends V> loader) {
+    this(maxSize, loader, QuadraticProbingHashMap::new);
+  }
+
+  /**
+   * Construct a cache.
+   *
+   * @param maxSize      the maximum number of entries.
+   * @param loader       computes the value on a miss, or null to only cache
+   *                     values that are put.
+   * @param tableFactory creates the empty backing map given its initial size,
+   *                     for example LinearProbingHashMap::new.
+   */
+  public ProbingHashCache(int maxSize, Function<? super K, ? extends V> loader,
+      IntFunction<ProbingHashMap<K, V>> tableFactory) {
+    if (maxSize < 1 || maxSize > Integer.MAX_VALUE / 4)
+      throw new IllegalArgumentException("Illegal maximum size: " + maxSize);
+    this.maxSize = maxSize;
+    this.loader = loader;
+    // At most a quarter of the slots are live, so the map only ever cleans
+    // out deleted slots and never doubles
+    table = tableFactory.apply(4 * maxSize + 1);
+  }
+
+  /**
+   * Look up a key, loading and caching the value on a miss if there is a
+   * loader.
+   *
+   * @param key the key.
+   * @return the value, or null if it is neither cached nor loadable.
+   */
+  public V get(K key) {
+    int currentPos = table.indexOf(key);
+    if (currentPos >= 0) {
+      hits++;
+      table.setReferenced(currentPos);
+      return table.valueAt(currentPos);
+    }
+
+    misses++;
+    if (loader == null)
+      return null;
+    V value = loader.apply(key);
+    if (value != null)
+      insertAbsent(key, value);
+    return value;
+  }
+
+  /**
+   * Put a value in the cache, evicting an entry if it is full.
+   *
+   * @param key   the key.
+   * @param value the value.
+   */
+  public void put(K key, V value) {
+    int currentPos = table.indexOf(key);
+    if (currentPos >= 0) {
+      table.setValueAt(currentPos, value);
+      table.setReferenced(currentPos);
+    } else
+      insertAbsent(key, value);
+  }
+
+  /**
+   * Remove a key from the cache.
+   *
+   * @param key the key.
+   * @return the cached value, or null if it was not cached.
+   */
+  public V invalidate(K key) {
+    return table.remove(key);
+  }
+
+  /**
+   * Get the number of cached entries.
+   *
+   * @return the size.
+   */
+  public int size() {
+    return table.size();
+  }
+
+  /**
+   * Get the maximum number of entries.
+   *
+   * @return the maximum size.
+   */
+  public int maxSize() {
+    return maxSize;
+  }
+
+  public long hitCount() {
+    return hits;
+  }
+
+  public long missCount() {
+    return misses;
+  }
+
+  public long evictionCount() {
+    return evictions;
+  }
+
+  private void insertAbsent(K key, V value) {
+    if (table.size() >= maxSize)
+      evict();
+    table.put(key, value);
+  }
+
+  /**
+   * Advance the clock hand to the first active slot without a reference bit,
+   * clearing the bits it passes, and evict that entry. The loop ends within two
+   * sweeps since the first sweep clears every bit.
+   */
+  private void evict() {
+    int capacity = table.capacity();
+    while (true) {
+      if (hand >= capacity)
+        hand = 0;
+      int currentPos = hand++;
+      if (table.isActiveAt(currentPos) && !table.clearReferenced(currentPos)) {
+        table.removeAt(currentPos);
+        evictions++;
+        return;
+      }
+    }
+  }
+
+  private final ProbingHashMap<K, V> table;
+  private final Function<? super K, ? extends V> loader;
+  private final int maxSize;
+  private int hand; // Next slot for the clock to look at
+  private long hits;
+  private long misses;
+  private long evictions;
+
+}
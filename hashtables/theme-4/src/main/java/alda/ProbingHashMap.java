@@ -0,0 +1,289 @@
+package alda;
+
+import java.util.function.Function;
+
+/**
+ * Key/value variant of ProbingHashTable. Keys, values and slot states are kept
+ * in parallel arrays, so no entry objects are created by put, get,
+ * computeIfAbsent or remove. The probing resolution is left to the subclasses
+ * exactly as in ProbingHashTable.
+ *
+ * Note that all "matching" of keys is based on the equals method.
+ */
+public abstract class ProbingHashMap<K, V> {
+  /**
+   * Construct the hash map.
+   */
+  public ProbingHashMap() {
+    this(DEFAULT_TABLE_SIZE);
+  }
+
+  /**
+   * Construct the hash map.
+   *
+   * @param size the approximate initial size.
+   */
+  public ProbingHashMap(int size) {
+    if (size < MINIMUM_TABLE_SIZE)
+      size = MINIMUM_TABLE_SIZE;
+    allocateArrays(size);
+  }
+
+  /**
+   * Find the value mapped to a key.
+   *
+   * @param key the key to search for.
+   * @return the mapped value, or null if the key is not present.
+   */
+  @SuppressWarnings("unchecked")
+  public V get(K key) {
+    int currentPos = findPos(key);
+    return isActive(currentPos) ? (V) values[currentPos] : null;
+  }
+
+  /**
+   * Return true if the key is present in the map.
+   *
+   * @param key the key to search for.
+   * @return true if the key is mapped.
+   */
+  public boolean containsKey(K key) {
+    return isActive(findPos(key));
+  }
+
+  /**
+   * Map a key to a value, replacing any previous mapping.
+   *
+   * @param key   the key.
+   * @param value the value.
+   * @return the previous value, or null if the key was not present.
+   */
+  @SuppressWarnings("unchecked")
+  public V put(K key, V value) {
+    int currentPos = findPos(key);
+    if (isActive(currentPos)) {
+      V old = (V) values[currentPos];
+      values[currentPos] = value;
+      return old;
+    }
+    insertAt(currentPos, key, value);
+    return null;
+  }
+
+  /**
+   * Return the value mapped to a key, computing and inserting it if the key is
+   * not present. The mapping function must not modify this map.
+   *
+   * @param key             the key.
+   * @param mappingFunction computes the value of an absent key.
+   * @return the present or computed value, or null if the function returned
+   *         null (in which case nothing is inserted).
+   */
+  @SuppressWarnings("unchecked")
+  public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+    int currentPos = findPos(key);
+    if (isActive(currentPos))
+      return (V) values[currentPos];
+
+    V value = mappingFunction.apply(key);
+    if (value != null)
+      insertAt(currentPos, key, value);
+    return value;
+  }
+
+  /**
+   * Remove a key from the map.
+   *
+   * @param key the key to remove.
+   * @return the value that was mapped to the key, or null if not present.
+   */
+  @SuppressWarnings("unchecked")
+  public V remove(K key) {
+    int currentPos = findPos(key);
+    if (!isActive(currentPos))
+      return null;
+
+    V old = (V) values[currentPos];
+    values[currentPos] = null;
+    states[currentPos] = DELETED;
+    theSize--;
+    return old;
+  }
+
+  /**
+   * Return the slot holding the key, or -1 if the key is not present.
+   */
+  int indexOf(K key) {
+    int currentPos = findPos(key);
+    return isActive(currentPos) ? currentPos : -1;
+  }
+
+  boolean isActiveAt(int currentPos) {
+    return isActive(currentPos);
+  }
+
+  @SuppressWarnings("unchecked")
+  V valueAt(int currentPos) {
+    return (V) values[currentPos];
+  }
+
+  void setValueAt(int currentPos, V value) {
+    values[currentPos] = value;
+  }
+
+  /**
+   * Set the reference bit of an active slot.
+   */
+  void setReferenced(int currentPos) {
+    states[currentPos] |= REFERENCED;
+  }
+
+  /**
+   * Clear the reference bit of a slot.
+   *
+   * @return true if the bit was set.
+   */
+  boolean clearReferenced(int currentPos) {
+    byte state = states[currentPos];
+    states[currentPos] = (byte) (state & ~REFERENCED);
+    return (state & REFERENCED) != 0;
+  }
+
+  /**
+   * Remove the key in an active slot.
+   */
+  void removeAt(int currentPos) {
+    values[currentPos] = null;
+    states[currentPos] = DELETED;
+    theSize--;
+  }
+
+  /**
+   * Get current size.
+   *
+   * @return the number of mapped keys.
+   */
+  public int size() {
+    return theSize;
+  }
+
+  /**
+   * Get length of internal arrays.
+   *
+   * @return the number of slots.
+   */
+  public int capacity() {
+    return keys.length;
+  }
+
+  /**
+   * Make the hash map logically empty.
+   */
+  public void makeEmpty() {
+    allocateArrays(keys.length);
+  }
+
+  private void insertAt(int currentPos, K key, V value) {
+    if (keys[currentPos] == null)
+      ++occupied;
+    keys[currentPos] = key;
+    values[currentPos] = value;
+    states[currentPos] = ACTIVE;
+    theSize++;
+
+    if (occupied > keys.length / 2)
+      rehash();
+  }
+
+  /**
+   * Expand the hash map, or clean it at the same size if deleted slots rather
+   * than live keys filled it. Reference bits are kept.
+   */
+  @SuppressWarnings("unchecked")
+  private void rehash() {
+    Object[] oldKeys = keys;
+    Object[] oldValues = values;
+    byte[] oldStates = states;
+
+    allocateArrays(theSize * 4 > oldKeys.length ? 2 * oldKeys.length : oldKeys.length);
+    for (int i = 0; i < oldKeys.length; i++)
+      if ((oldStates[i] & ACTIVE) != 0) {
+        int currentPos = findPos((K) oldKeys[i]);
+        keys[currentPos] = oldKeys[i];
+        values[currentPos] = oldValues[i];
+        states[currentPos] = oldStates[i];
+        occupied++;
+        theSize++;
+      }
+  }
+
+  protected boolean continueProbing(int currentPos, K key) {
+    return keys[currentPos] != null && !keys[currentPos].equals(key);
+  }
+
+  /**
+   * Method that performs probing resolution.
+   *
+   * @param key the key to search for.
+   * @return the position where the search terminates.
+   */
+  protected abstract int findPos(K key);
+
+  private boolean isActive(int currentPos) {
+    return (states[currentPos] & ACTIVE) != 0;
+  }
+
+  protected int myhash(K key) {
+    int hashVal = key.hashCode();
+
+    hashVal %= keys.length;
+    if (hashVal < 0)
+      hashVal += keys.length;
+
+    return hashVal;
+  }
+
+  private static final int DEFAULT_TABLE_SIZE = 101;
+  private static final int MINIMUM_TABLE_SIZE = 5;
+
+  private static final byte DELETED = 0;
+  private static final byte ACTIVE = 1;
+  private static final byte REFERENCED = 2; // Used by ProbingHashCache
+
+  private Object[] keys; // The keys, null if the slot was never used
+  private Object[] values; // The values, parallel to keys
+  private byte[] states; // ACTIVE and REFERENCED bits, parallel to keys
+  private int occupied; // The number of occupied slots
+  private int theSize; // Current size
+
+  /**
+   * Internal method to allocate the parallel arrays.
+   *
+   * @param arraySize the size of the arrays.
+   */
+  private void allocateArrays(int arraySize) {
+    int length = nextPrime(arraySize);
+    keys = new Object[length];
+    values = new Object[length];
+    states = new byte[length];
+    occupied = 0;
+    theSize = 0;
+  }
+
+  /**
+   * Internal method to find a prime number at least as large as n.
+   *
+   * @param n the starting number (must be positive).
+   * @return a prime number larger than or equal to n.
+   */
+  private static int nextPrime(int n) {
+    if (n % 2 == 0)
+      n++;
+
+    for (; !ProbingHashTable.isPrime(n); n += 2)
+      ;
+
+    return n;
+  }
+
+}
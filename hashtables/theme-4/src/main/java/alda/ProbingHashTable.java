@@ -1,6 +1,12 @@
 package alda;
 
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Detta är QuadraticProbingHashTable från boken med probing-metoden utbruten så
@@ -14,7 +20,7 @@ import java.util.Arrays;
  * 
  * @author Mark Allen Weiss
  */
-public abstract class ProbingHashTable<AnyType> {
+public abstract class ProbingHashTable<AnyType> implements Iterable<AnyType> {
   /**
    * Construct the hash table.
    */
@@ -62,6 +68,9 @@ public abstract class ProbingHashTable<AnyType> {
    */
   private void rehash() {
     HashEntry<AnyType>[] oldArray = array;
+    if (oldArray.length > MAXIMUM_TABLE_SIZE / 2)
+      throw new IllegalStateException("Table cannot grow past " + oldArray.length
+          + " slots, use a SegmentedProbingHashTable");
 
     // Create a new double-sized, empty table
     allocateArray(2 * oldArray.length);
@@ -169,6 +178,115 @@ public abstract class ProbingHashTable<AnyType> {
     return Arrays.toString(array);
   }
 
+  /**
+   * Iterate over the active elements. The iterator is weakly consistent: it
+   * walks the slot array that was current when it was created, so it never
+   * throws ConcurrentModificationException, and changes made while iterating
+   * may or may not be seen.
+   */
+  @Override
+  public Iterator<AnyType> iterator() {
+    HashEntry<AnyType>[] slots = array;
+    return new Iterator<AnyType>() {
+      private int next = nextActive(slots, 0, slots.length);
+
+      @Override
+      public boolean hasNext() {
+        return next < slots.length;
+      }
+
+      @Override
+      public AnyType next() {
+        if (next >= slots.length)
+          throw new NoSuchElementException();
+        AnyType element = slots[next].element;
+        next = nextActive(slots, next + 1, slots.length);
+        return element;
+      }
+    };
+  }
+
+  /**
+   * Spliterator over the active elements, with the same weak consistency as
+   * iterator. It splits by halving the slot range, so a parallel stream gets
+   * balanced work without counting elements first.
+   */
+  @Override
+  public Spliterator<AnyType> spliterator() {
+    return new SlotSpliterator<>(array, 0, array.length, theSize);
+  }
+
+  /**
+   * Stream the active elements. Call parallel() on the result to process the
+   * slot ranges on several cores.
+   */
+  public Stream<AnyType> stream() {
+    return StreamSupport.stream(spliterator(), false);
+  }
+
+  private static int nextActive(HashEntry<?>[] slots, int from, int fence) {
+    while (from < fence && (slots[from] == null || !slots[from].isActive))
+      from++;
+    return from;
+  }
+
+  private static class SlotSpliterator<AnyType> implements Spliterator<AnyType> {
+    private final HashEntry<AnyType>[] slots;
+    private int index; // Next slot to look at
+    private final int fence; // One past the last slot
+    private long estimate; // Estimated number of elements in the range
+
+    SlotSpliterator(HashEntry<AnyType>[] slots, int origin, int fence, long estimate) {
+      this.slots = slots;
+      this.index = origin;
+      this.fence = fence;
+      this.estimate = estimate;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super AnyType> action) {
+      index = nextActive(slots, index, fence);
+      if (index >= fence)
+        return false;
+      action.accept(slots[index++].element);
+      return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super AnyType> action) {
+      HashEntry<AnyType>[] a = slots;
+      for (int i = index; i < fence; i++) {
+        HashEntry<AnyType> entry = a[i];
+        if (entry != null && entry.isActive)
+          action.accept(entry.element);
+      }
+      index = fence;
+    }
+
+    @Override
+    public Spliterator<AnyType> trySplit() {
+      int mid = (index + fence) >>> 1;
+      if (mid - index < MINIMUM_SPLIT_SLOTS)
+        return null;
+      estimate >>>= 1;
+      Spliterator<AnyType> prefix = new SlotSpliterator<>(slots, index, mid, estimate);
+      index = mid;
+      return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+      return estimate;
+    }
+
+    @Override
+    public int characteristics() {
+      return DISTINCT | NONNULL;
+    }
+
+    private static final int MINIMUM_SPLIT_SLOTS = 1024;
+  }
+
   private static class HashEntry<AnyType> {
     public AnyType element; // the element
     public boolean isActive; // false if marked deleted
@@ -190,6 +308,7 @@ public abstract class ProbingHashTable<AnyType> {
 
   private static final int DEFAULT_TABLE_SIZE = 101;
   private static final int MINIMUM_TABLE_SIZE = 5;
+  private static final int MAXIMUM_TABLE_SIZE = Integer.MAX_VALUE - 8;
 
   private HashEntry<AnyType>[] array; // The array of elements
   private int occupied; // The number of occupied cells
@@ -0,0 +1,27 @@
+package alda;
+
+public class QuadraticProbingHashMap<K, V> extends ProbingHashMap<K, V> {
+
+  public QuadraticProbingHashMap() {
+    super();
+  }
+
+  public QuadraticProbingHashMap(int size) {
+    super(size);
+  }
+
+  @Override
+  protected int findPos(K key) {
+    int offset = 1;
+    int currentPos = myhash(key);
+    while (continueProbing(currentPos, key)) {
+      currentPos += offset; // Compute ith probe
+      offset += 2; // See QuadraticProbingHashTable
+      if (currentPos >= capacity())
+        currentPos -= capacity();
+    }
+
+    return currentPos;
+  }
+
+}
@@ -2,6 +2,14 @@ package alda;
 
 public class QuadraticProbingHashTable<AnyType> extends ProbingHashTable<AnyType> {
 
+  public QuadraticProbingHashTable() {
+    super();
+  }
+
+  public QuadraticProbingHashTable(int size) {
+    super(size);
+  }
+
   @Override
   protected int findPos(AnyType x) {
     int offset = 1;
@@ -0,0 +1,110 @@
+package alda;
+
+/**
+ * Array of references indexed by long. The slots are stored in fixed-size
+ * pages that are allocated on first write, so the length is not limited by the
+ * maximum size of a Java array and no single huge allocation is needed.
+ */
+public class SegmentedArray<AnyType> {
+
+  /**
+   * Construct an array where every slot is null.
+   *
+   * @param length the number of slots.
+   */
+  public SegmentedArray(long length) {
+    this(length, DEFAULT_PAGE_SHIFT);
+  }
+
+  /**
+   * Construct an array with a custom page size.
+   *
+   * @param length    the number of slots.
+   * @param pageShift log2 of the number of slots per page.
+   */
+  SegmentedArray(long length, int pageShift) {
+    if (length < 0)
+      throw new IllegalArgumentException("Negative length");
+    if (pageShift < 1 || pageShift > 30)
+      throw new IllegalArgumentException("Page shift must be in [1, 30]");
+    this.length = length;
+    this.pageShift = pageShift;
+    this.pageMask = (1 << pageShift) - 1;
+    long pageCount = (length + pageMask) >>> pageShift;
+    if (pageCount > Integer.MAX_VALUE)
+      throw new IllegalArgumentException("Too many pages");
+    pages = new Object[(int) pageCount][];
+  }
+
+  /**
+   * Get the value of a slot.
+   *
+   * @param index the slot.
+   * @return the value, or null if the slot was never set.
+   */
+  @SuppressWarnings("unchecked")
+  public AnyType get(long index) {
+    Object[] page = pages[(int) (index >>> pageShift)];
+    return page == null ? null : (AnyType) page[(int) index & pageMask];
+  }
+
+  /**
+   * Set the value of a slot.
+   *
+   * @param index the slot.
+   * @param x     the new value.
+   */
+  public void set(long index, AnyType x) {
+    int pageIndex = (int) (index >>> pageShift);
+    Object[] page = pages[pageIndex];
+    if (page == null) {
+      if (x == null)
+        return;
+      page = pages[pageIndex] = new Object[pageLength(pageIndex)];
+    }
+    page[(int) index & pageMask] = x;
+  }
+
+  /**
+   * Get the number of slots.
+   *
+   * @return the length.
+   */
+  public long length() {
+    return length;
+  }
+
+  /**
+   * Get the number of slots per page.
+   *
+   * @return the page length.
+   */
+  public int pageSize() {
+    return pageMask + 1;
+  }
+
+  /**
+   * Return the page holding the given page index, or null if nothing has been
+   * written to it. Used for iteration without per-slot index arithmetic.
+   */
+  Object[] page(int pageIndex) {
+    return pages[pageIndex];
+  }
+
+  int pageCount() {
+    return pages.length;
+  }
+
+  private int pageLength(int pageIndex) {
+    long start = (long) pageIndex << pageShift;
+    return (int) Math.min(pageMask + 1, length - start);
+  }
+
+  private static final int DEFAULT_PAGE_SHIFT = 20;
+
+  private final long length;
+  private final int pageShift;
+  private final int pageMask;
+  private final Object[][] pages;
+
+}
@@ -0,0 +1,55 @@
+package alda;
+
+public class SegmentedDoubleHashingProbingHashTable<AnyType> extends SegmentedProbingHashTable<AnyType> {
+
+  private long primeCapacity; // the capacity r was computed for
+  private long r; // prime smaller than the capacity
+
+  public SegmentedDoubleHashingProbingHashTable() {
+    super();
+  }
+
+  public SegmentedDoubleHashingProbingHashTable(long size) {
+    super(size);
+  }
+
+  SegmentedDoubleHashingProbingHashTable(long size, int pageShift) {
+    super(size, pageShift);
+  }
+
+  /*
+   * f(i) = i * hash2(x), where hash2(x) = R - (x mod R). The next probe is
+   * computed incrementally so that i * hash2(x) never overflows.
+   */
+  @Override
+  protected long findPos(AnyType x) {
+    long currentPos = myhash(x);
+    if (!continueProbing(currentPos, x))
+      return currentPos;
+
+    long step = hash2(currentPos);
+    while (continueProbing(currentPos, x)) {
+      currentPos += step;
+      if (currentPos >= capacity())
+        currentPos -= capacity();
+    }
+    return currentPos;
+  }
+
+  private long hash2(long home) {
+    if (primeCapacity != capacity()) {
+      r = smallerPrimeThanCapacity();
+      primeCapacity = capacity();
+    }
+    return r - (home % r);
+  }
+
+  protected long smallerPrimeThanCapacity() {
+    long n = capacity() - 2;
+    while (!isPrime(n)) {
+      n -= 2;
+    }
+    return n;
+  }
+
+}
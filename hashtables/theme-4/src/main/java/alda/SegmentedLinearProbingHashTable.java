@@ -0,0 +1,28 @@
+package alda;
+
+public class SegmentedLinearProbingHashTable<AnyType> extends SegmentedProbingHashTable<AnyType> {
+
+  public SegmentedLinearProbingHashTable() {
+    super();
+  }
+
+  public SegmentedLinearProbingHashTable(long size) {
+    super(size);
+  }
+
+  SegmentedLinearProbingHashTable(long size, int pageShift) {
+    super(size, pageShift);
+  }
+
+  @Override
+  protected long findPos(AnyType x) {
+    long currentPos = myhash(x);
+    while (continueProbing(currentPos, x)) {
+      currentPos++;
+      if (currentPos >= capacity())
+        currentPos -= capacity();
+    }
+    return currentPos;
+  }
+
+}
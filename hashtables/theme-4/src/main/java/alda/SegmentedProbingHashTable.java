@@ -0,0 +1,277 @@
+package alda;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Variant of ProbingHashTable whose slots are addressed by long and stored in
+ * a SegmentedArray, so a single table can grow past Integer.MAX_VALUE slots.
+ * As in ProbingHashTable the probing resolution is left to the subclasses.
+ *
+ * Removed elements are replaced by a shared tombstone instead of an inactive
+ * HashEntry, so a slot costs one reference and nothing is allocated per insert.
+ *
+ * Note that all "matching" is based on the equals method.
+ */
+public abstract class SegmentedProbingHashTable<AnyType> implements Iterable<AnyType> {
+  /**
+   * Construct the hash table.
+   */
+  public SegmentedProbingHashTable() {
+    this(DEFAULT_TABLE_SIZE);
+  }
+
+  /**
+   * Construct the hash table.
+   *
+   * @param size the approximate initial size.
+   */
+  public SegmentedProbingHashTable(long size) {
+    this(size, DEFAULT_PAGE_SHIFT);
+  }
+
+  /**
+   * Construct the hash table with a custom page size.
+   *
+   * @param size      the approximate initial size.
+   * @param pageShift log2 of the number of slots per page.
+   */
+  SegmentedProbingHashTable(long size, int pageShift) {
+    if (size < MINIMUM_TABLE_SIZE)
+      size = MINIMUM_TABLE_SIZE;
+    this.pageShift = pageShift;
+    allocateArray(size);
+  }
+
+  /**
+   * Insert into the hash table. If the item is already present, do nothing.
+   *
+   * @param x the item to insert.
+   * @return true if the item was inserted.
+   */
+  public boolean insert(AnyType x) {
+    long currentPos = findPos(x);
+    if (array.get(currentPos) != null)
+      return false;
+
+    array.set(currentPos, x);
+    ++occupied;
+    theSize++;
+
+    if (occupied > array.length() / 2)
+      rehash();
+
+    return true;
+  }
+
+  /**
+   * Expand the hash table.
+   */
+  @SuppressWarnings("unchecked")
+  private void rehash() {
+    SegmentedArray<Object> oldArray = array;
+
+    // Create a new double-sized, empty table unless the tombstones alone
+    // filled it, in which case it is cleaned at the same size
+    allocateArray(theSize * 4 > oldArray.length() ? 2 * oldArray.length() : oldArray.length());
+
+    for (int p = 0; p < oldArray.pageCount(); p++) {
+      Object[] page = oldArray.page(p);
+      if (page == null)
+        continue;
+      for (Object element : page)
+        if (element != null && element != DELETED) {
+          array.set(findPos((AnyType) element), element);
+          occupied++;
+          theSize++;
+        }
+    }
+  }
+
+  protected boolean continueProbing(long currentPos, AnyType x) {
+    Object element = array.get(currentPos);
+    return element != null && (element == DELETED || !element.equals(x));
+  }
+
+  /**
+   * Method that performs probing resolution.
+   *
+   * @param x the item to search for.
+   * @return the position where the search terminates.
+   */
+  protected abstract long findPos(AnyType x);
+
+  /**
+   * Remove from the hash table.
+   *
+   * @param x the item to remove.
+   * @return true if item removed
+   */
+  public boolean remove(AnyType x) {
+    long currentPos = findPos(x);
+    if (array.get(currentPos) == null)
+      return false;
+
+    array.set(currentPos, DELETED);
+    theSize--;
+    return true;
+  }
+
+  /**
+   * Find an item in the hash table.
+   *
+   * @param x the item to search for.
+   * @return true if the item is present.
+   */
+  public boolean contains(AnyType x) {
+    return array.get(findPos(x)) != null;
+  }
+
+  /**
+   * Get current size.
+   *
+   * @return the size.
+   */
+  public long size() {
+    return theSize;
+  }
+
+  /**
+   * Get length of internal table.
+   *
+   * @return the number of slots.
+   */
+  public long capacity() {
+    return array.length();
+  }
+
+  /**
+   * Make the hash table logically empty.
+   */
+  public void makeEmpty() {
+    allocateArray(array.length());
+  }
+
+  /**
+   * Iterate over the elements, page by page.
+   */
+  @Override
+  public Iterator<AnyType> iterator() {
+    return new Iterator<AnyType>() {
+      private final SegmentedArray<Object> pages = array;
+      private int pageIndex = -1;
+      private Object[] page;
+      private int slot;
+      private Object next = advance();
+
+      private Object advance() {
+        while (true) {
+          if (page != null)
+            while (slot < page.length) {
+              Object element = page[slot++];
+              if (element != null && element != DELETED)
+                return element;
+            }
+          if (++pageIndex >= pages.pageCount())
+            return null;
+          page = pages.page(pageIndex);
+          slot = 0;
+        }
+      }
+
+      @Override
+      public boolean hasNext() {
+        return next != null;
+      }
+
+      @Override
+      @SuppressWarnings("unchecked")
+      public AnyType next() {
+        if (next == null)
+          throw new NoSuchElementException();
+        Object element = next;
+        next = advance();
+        return (AnyType) element;
+      }
+    };
+  }
+
+  /**
+   * Map the item to its home slot. The 32-bit hashCode is spread over 64 bits
+   * first; subclasses with wider hashes can override hash64.
+   */
+  protected long myhash(AnyType x) {
+    return Math.floorMod(hash64(x), array.length());
+  }
+
+  /**
+   * Compute a 64-bit hash of the item.
+   *
+   * @param x the item.
+   * @return the hash.
+   */
+  protected long hash64(AnyType x) {
+    long h = x.hashCode() * 0x9E3779B97F4A7C15L;
+    return h ^ (h >>> 32);
+  }
+
+  private static final Object DELETED = new Object();
+
+  private static final long DEFAULT_TABLE_SIZE = 101;
+  private static final long MINIMUM_TABLE_SIZE = 5;
+  private static final int DEFAULT_PAGE_SHIFT = 20;
+
+  private final int pageShift;
+  private SegmentedArray<Object> array; // The slots, DELETED marks a removed element
+  private long occupied; // The number of occupied cells
+  private long theSize; // Current size
+
+  /**
+   * Internal method to allocate array.
+   *
+   * @param arraySize the size of the array.
+   */
+  private void allocateArray(long arraySize) {
+    array = new SegmentedArray<>(nextPrime(arraySize), pageShift);
+    occupied = 0;
+    theSize = 0;
+  }
+
+  /**
+   * Internal method to find a prime number at least as large as n.
+   *
+   * @param n the starting number (must be positive).
+   * @return a prime number larger than or equal to n.
+   */
+  static long nextPrime(long n) {
+    if (n % 2 == 0)
+      n++;
+
+    for (; !isPrime(n); n += 2)
+      ;
+
+    return n;
+  }
+
+  /**
+   * Internal method to test if a number is prime. Trial division, which is
+   * still cheap for table sizes in the billions.
+   *
+   * @param n the number to test.
+   * @return the result of the test.
+   */
+  protected static final boolean isPrime(long n) {
+    if (n == 2 || n == 3)
+      return true;
+
+    if (n == 1 || n % 2 == 0)
+      return false;
+
+    for (long i = 3; i * i <= n; i += 2)
+      if (n % i == 0)
+        return false;
+
+    return true;
+  }
+
+}
@@ -0,0 +1,31 @@
+package alda;
+
+public class SegmentedQuadraticProbingHashTable<AnyType> extends SegmentedProbingHashTable<AnyType> {
+
+  public SegmentedQuadraticProbingHashTable() {
+    super();
+  }
+
+  public SegmentedQuadraticProbingHashTable(long size) {
+    super(size);
+  }
+
+  SegmentedQuadraticProbingHashTable(long size, int pageShift) {
+    super(size, pageShift);
+  }
+
+  @Override
+  protected long findPos(AnyType x) {
+    long offset = 1;
+    long currentPos = myhash(x);
+    while (continueProbing(currentPos, x)) {
+      currentPos += offset; // Compute ith probe
+      offset += 2; // See QuadraticProbingHashTable
+      if (currentPos >= capacity())
+        currentPos -= capacity();
+    }
+
+    return currentPos;
+  }
+
+}
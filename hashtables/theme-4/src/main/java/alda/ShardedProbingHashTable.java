@@ -0,0 +1,394 @@
+package alda;
+
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntFunction;
+
+/**
+ * Hash table split into independent ProbingHashTable shards, each owned by its
+ * own worker thread, for bulk insert jobs that should use every core. A key is
+ * routed to a shard by the high bits of its mixed hash code, while the shard
+ * itself uses the low bits, so routing does not skew the probing inside a
+ * shard.
+ *
+ * The caller submits batches. A batch is split per shard and the pieces are
+ * handed to the workers through bounded single-producer/single-consumer ring
+ * buffers, so no shard table is ever touched by two threads and the workers
+ * share nothing but their queue indexes. Submissions are serialized, which
+ * keeps each ring single-producer even if several threads submit.
+ *
+ * Submitted work is applied asynchronously. flush waits until every
+ * submitted batch has been applied; size, contains and iteration flush first
+ * and then read the shards. Queries hold the same lock as submissions, so no
+ * batch can reach a worker while a shard is read, and any thread may query
+ * while others submit. A table must be closed to stop its workers.
+ */
+public class ShardedProbingHashTable<AnyType> implements Iterable<AnyType>, AutoCloseable {
+
+  /**
+   * Construct a table with one shard per available processor.
+   *
+   * @param tableFactory creates an empty shard given its initial size, for
+   *                     example QuadraticProbingHashTable::new.
+   */
+  public ShardedProbingHashTable(IntFunction<ProbingHashTable<AnyType>> tableFactory) {
+    this(Runtime.getRuntime().availableProcessors(), tableFactory);
+  }
+
+  /**
+   * Construct a table.
+   *
+   * @param shards       the number of shards and worker threads.
+   * @param tableFactory creates an empty shard given its initial size.
+   */
+  public ShardedProbingHashTable(int shards, IntFunction<ProbingHashTable<AnyType>> tableFactory) {
+    this(shards, tableFactory, DEFAULT_QUEUE_CAPACITY);
+  }
+
+  /**
+   * Construct a table.
+   *
+   * @param shards        the number of shards and worker threads.
+   * @param tableFactory  creates an empty shard given its initial size.
+   * @param queueCapacity the number of batches each shard queue can hold,
+   *                      rounded up to a power of two.
+   */
+  @SuppressWarnings("unchecked")
+  public ShardedProbingHashTable(int shards, IntFunction<ProbingHashTable<AnyType>> tableFactory,
+      int queueCapacity) {
+    if (shards < 1)
+      throw new IllegalArgumentException("At least one shard is needed");
+    if (queueCapacity < 1)
+      throw new IllegalArgumentException("Queue capacity must be positive");
+    this.shards = new Shard[shards];
+    for (int i = 0; i < shards; i++)
+      this.shards[i] = new Shard<>(tableFactory.apply(0), queueCapacity, "shard-" + i);
+    for (Shard<AnyType> shard : this.shards)
+      shard.worker.start();
+  }
+
+  /**
+   * Submit a batch of inserts. Items already present are ignored.
+   *
+   * @param items the items to insert.
+   */
+  public void submitInserts(Collection<? extends AnyType> items) {
+    submit(items, INSERT);
+  }
+
+  /**
+   * Submit a batch of removes.
+   *
+   * @param items the items to remove.
+   */
+  public void submitRemoves(Collection<? extends AnyType> items) {
+    submit(items, REMOVE);
+  }
+
+  /**
+   * Wait until every submitted batch has been applied.
+   *
+   * @throws IllegalStateException if a worker failed.
+   */
+  public synchronized void flush() {
+    for (Shard<AnyType> shard : shards)
+      shard.awaitCompleted();
+  }
+
+  /**
+   * Find an item, after applying all submitted batches.
+   *
+   * @param x the item to search for.
+   * @return true if the item is present.
+   */
+  public synchronized boolean contains(AnyType x) {
+    flush();
+    return shards[shardOf(x)].table.contains(x);
+  }
+
+  /**
+   * Get the total size of the shards, after applying all submitted batches.
+   *
+   * @return the size.
+   */
+  public synchronized int size() {
+    flush();
+    int size = 0;
+    for (Shard<AnyType> shard : shards)
+      size += shard.table.size();
+    return size;
+  }
+
+  /**
+   * Get the number of items that were new when inserted, over all shards.
+   *
+   * @return the number of successful inserts.
+   */
+  public synchronized long insertedCount() {
+    flush();
+    long inserted = 0;
+    for (Shard<AnyType> shard : shards)
+      inserted += shard.inserted;
+    return inserted;
+  }
+
+  /**
+   * Get the number of shards.
+   *
+   * @return the shard count.
+   */
+  public int shardCount() {
+    return shards.length;
+  }
+
+  /**
+   * Iterate over all shards, after applying all submitted batches. The items
+   * are copied while submissions are blocked, so later submissions do not
+   * affect the iteration.
+   */
+  @Override
+  public synchronized Iterator<AnyType> iterator() {
+    flush();
+    int size = 0;
+    for (Shard<AnyType> shard : shards)
+      size += shard.table.size();
+    List<AnyType> items = new ArrayList<>(size);
+    for (Shard<AnyType> shard : shards)
+      for (AnyType x : shard.table)
+        items.add(x);
+    return Collections.unmodifiableList(items).iterator();
+  }
+
+  /**
+   * Stop the workers after they have applied all submitted batches.
+   */
+  @Override
+  public synchronized void close() {
+    if (closed)
+      return;
+    closed = true;
+    for (Shard<AnyType> shard : shards)
+      while (shard.worker.isAlive() && !shard.queue.offer(STOP))
+        Thread.onSpinWait();
+    for (Shard<AnyType> shard : shards)
+      LockSupport.unpark(shard.worker);
+    boolean interrupted = false;
+    for (Shard<AnyType> shard : shards)
+      while (true) {
+        try {
+          shard.worker.join();
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    if (interrupted)
+      Thread.currentThread().interrupt();
+  }
+
+  /**
+   * Route an item by the high bits of its mixed hash code, spreading them
+   * evenly over the shards without a division.
+   */
+  int shardOf(Object x) {
+    int mixed = x.hashCode() * 0x9E3779B9;
+    return (int) (((mixed & 0xFFFFFFFFL) * shards.length) >>> 32);
+  }
+
+  private synchronized void submit(Collection<? extends AnyType> items, byte op) {
+    if (closed)
+      throw new IllegalStateException("Table is closed");
+    if (items.isEmpty())
+      return;
+
+    int n = shards.length;
+    List<List<Object>> pieces = new ArrayList<>(n);
+    int expected = items.size() / n + 1;
+    for (int i = 0; i < n; i++)
+      pieces.add(new ArrayList<>(expected + expected / 2));
+    for (AnyType x : items)
+      pieces.get(shardOf(x)).add(x);
+
+    for (int i = 0; i < n; i++) {
+      List<Object> piece = pieces.get(i);
+      if (!piece.isEmpty())
+        shards[i].put(new Batch(op, piece.toArray()));
+    }
+  }
+
+  /**
+   * A piece of a submitted batch for one shard.
+   */
+  private static class Batch {
+    final byte op;
+    final Object[] items;
+
+    Batch(byte op, Object[] items) {
+      this.op = op;
+      this.items = items;
+    }
+  }
+
+  /**
+   * A shard table with its worker thread and queue. Only the worker touches
+   * the table while it runs; queries read it holding the table lock after
+   * awaitCompleted, which orders the reads after the worker's writes through
+   * the completed counter, and no new batch can arrive until they are done.
+   */
+  private static class Shard<AnyType> implements Runnable {
+    final ProbingHashTable<AnyType> table;
+    final SpscQueue<Batch> queue;
+    final Thread worker;
+    long submitted; // Written by the producer only
+    final AtomicLong completed = new AtomicLong();
+    long inserted; // Published through completed
+    volatile boolean sleeping;
+    volatile Throwable failure;
+
+    Shard(ProbingHashTable<AnyType> table, int queueCapacity, String name) {
+      this.table = table;
+      queue = new SpscQueue<>(queueCapacity);
+      worker = new Thread(this, name);
+      worker.setDaemon(true);
+    }
+
+    void put(Batch batch) {
+      while (!queue.offer(batch)) {
+        checkFailure();
+        Thread.onSpinWait();
+      }
+      submitted++;
+      // offer publishes the tail with a release store, which may otherwise
+      // be ordered after the read of sleeping and lose the unpark
+      VarHandle.fullFence();
+      if (sleeping)
+        LockSupport.unpark(worker);
+    }
+
+    void awaitCompleted() {
+      int spins = 0;
+      while (completed.get() < submitted) {
+        checkFailure();
+        if (++spins < SPINS)
+          Thread.onSpinWait();
+        else
+          LockSupport.parkNanos(PARK_NANOS);
+      }
+      checkFailure();
+    }
+
+    private void checkFailure() {
+      if (failure != null)
+        throw new IllegalStateException("Shard worker " + worker.getName() + " failed", failure);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void run() {
+      try {
+        int idle = 0;
+        while (true) {
+          Batch batch = queue.poll();
+          if (batch == null) {
+            if (++idle < SPINS) {
+              Thread.onSpinWait();
+              continue;
+            }
+            // Announce the sleep before the last check. With the fence in
+            // put, a put either is seen here or sees sleeping and unparks us
+            sleeping = true;
+            if (queue.isEmpty())
+              LockSupport.parkNanos(this, PARK_NANOS);
+            sleeping = false;
+            continue;
+          }
+          idle = 0;
+          if (batch == STOP)
+            return;
+
+          if (batch.op == INSERT) {
+            for (Object x : batch.items)
+              if (table.insert((AnyType) x))
+                inserted++;
+          } else
+            for (Object x : batch.items)
+              table.remove((AnyType) x);
+          completed.lazySet(completed.get() + 1);
+        }
+      } catch (Throwable t) {
+        failure = t;
+      }
+    }
+  }
+
+  /**
+   * Bounded lock-free queue for exactly one producer and one consumer thread.
+   * Each index is written by one side only, so plain ordered writes suffice.
+   */
+  static class SpscQueue<E> {
+    private final Object[] buffer;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong(); // Next slot to poll, written by the consumer
+    private final AtomicLong tail = new AtomicLong(); // Next slot to offer, written by the producer
+    private long cachedHead; // Producer's last view of head
+    private long cachedTail; // Consumer's last view of tail
+
+    SpscQueue(int capacity) {
+      int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+      buffer = new Object[Math.max(2, size)];
+      mask = buffer.length - 1;
+    }
+
+    boolean offer(E e) {
+      long t = tail.get();
+      if (t - cachedHead == buffer.length) {
+        cachedHead = head.get();
+        if (t - cachedHead == buffer.length)
+          return false;
+      }
+      buffer[(int) t & mask] = e;
+      tail.lazySet(t + 1);
+      return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    E poll() {
+      long h = head.get();
+      if (h == cachedTail) {
+        cachedTail = tail.get();
+        if (h == cachedTail)
+          return null;
+      }
+      int index = (int) h & mask;
+      E e = (E) buffer[index];
+      buffer[index] = null;
+      head.lazySet(h + 1);
+      return e;
+    }
+
+    boolean isEmpty() {
+      return head.get() == tail.get();
+    }
+
+    int capacity() {
+      return buffer.length;
+    }
+  }
+
+  private static final byte INSERT = 0;
+  private static final byte REMOVE = 1;
+  private static final Batch STOP = new Batch(INSERT, new Object[0]);
+  private static final int DEFAULT_QUEUE_CAPACITY = 64;
+  private static final int SPINS = 1000;
+  private static final long PARK_NANOS = 100_000;
+
+  private final Shard<AnyType>[] shards;
+  private boolean closed;
+
+}
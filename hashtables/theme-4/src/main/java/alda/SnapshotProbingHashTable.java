@@ -0,0 +1,191 @@
+package alda;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+
+/**
+ * Read-optimized wrapper around ProbingHashTable for tables that are read by
+ * many threads and updated rarely. Readers use the currently published table
+ * through a single volatile read and never take a lock. Writers queue their
+ * inserts and removes; publish builds a new table from the published one plus
+ * the queued changes and replaces the published reference, so a reader sees
+ * either all of a batch or none of it.
+ *
+ * A published table is never modified again. Memory is bounded by the
+ * published table, the one being built and the pending batch, which is
+ * published automatically when it reaches its maximum size. Old tables are
+ * reclaimed by the garbage collector once no reader holds them.
+ */
+public class SnapshotProbingHashTable<AnyType> {
+
+  /**
+   * Construct an empty table.
+   *
+   * @param tableFactory creates an empty table given its initial size, for
+   *                     example QuadraticProbingHashTable::new.
+   */
+  public SnapshotProbingHashTable(IntFunction<ProbingHashTable<AnyType>> tableFactory) {
+    this(tableFactory, DEFAULT_MAX_PENDING);
+  }
+
+  /**
+   * Construct an empty table.
+   *
+   * @param tableFactory creates an empty table given its initial size.
+   * @param maxPending   the number of queued writes that triggers a publish.
+   */
+  public SnapshotProbingHashTable(IntFunction<ProbingHashTable<AnyType>> tableFactory, int maxPending) {
+    if (maxPending < 1)
+      throw new IllegalArgumentException("maxPending must be positive");
+    this.tableFactory = tableFactory;
+    this.maxPending = maxPending;
+    published = tableFactory.apply(0);
+    pendingItems = new Object[Math.min(maxPending, 16)];
+    pendingInserts = new boolean[pendingItems.length];
+  }
+
+  /**
+   * Find an item in the published table.
+   *
+   * @param x the item to search for.
+   * @return true if the item is present.
+   */
+  public boolean contains(AnyType x) {
+    return published.contains(x);
+  }
+
+  /**
+   * Get the size of the published table.
+   *
+   * @return the size.
+   */
+  public int size() {
+    return published.size();
+  }
+
+  /**
+   * Get the published table as a read-only snapshot. Several reads through the
+   * same snapshot see the same version.
+   *
+   * @return the snapshot.
+   */
+  public Snapshot<AnyType> snapshot() {
+    return new Snapshot<>(published);
+  }
+
+  /**
+   * A consistent read-only view of one published version.
+   */
+  public static class Snapshot<AnyType> implements Iterable<AnyType> {
+    private final ProbingHashTable<AnyType> table;
+
+    private Snapshot(ProbingHashTable<AnyType> table) {
+      this.table = table;
+    }
+
+    public boolean contains(AnyType x) {
+      return table.contains(x);
+    }
+
+    public int size() {
+      return table.size();
+    }
+
+    @Override
+    public Iterator<AnyType> iterator() {
+      return table.iterator();
+    }
+
+    public Stream<AnyType> stream() {
+      return table.stream();
+    }
+  }
+
+  /**
+   * Queue an insert. It becomes visible to readers at the next publish.
+   *
+   * @param x the item to insert.
+   */
+  public void insert(AnyType x) {
+    enqueue(x, true);
+  }
+
+  /**
+   * Queue a remove. It becomes visible to readers at the next publish.
+   *
+   * @param x the item to remove.
+   */
+  public void remove(AnyType x) {
+    enqueue(x, false);
+  }
+
+  /**
+   * Publish all queued writes as a new version.
+   */
+  @SuppressWarnings("unchecked")
+  public void publish() {
+    writeLock.lock();
+    try {
+      if (pendingSize == 0)
+        return;
+
+      ProbingHashTable<AnyType> current = published;
+      // Twice the final size keeps the copy from rehashing along the way
+      ProbingHashTable<AnyType> next = tableFactory.apply(2 * (current.size() + pendingSize) + 1);
+      for (AnyType x : current)
+        next.insert(x);
+      for (int i = 0; i < pendingSize; i++)
+        if (pendingInserts[i])
+          next.insert((AnyType) pendingItems[i]);
+        else
+          next.remove((AnyType) pendingItems[i]);
+
+      published = next;
+      Arrays.fill(pendingItems, 0, pendingSize, null);
+      pendingSize = 0;
+      versions++;
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * Get the number of versions published so far.
+   *
+   * @return the version count.
+   */
+  public long versions() {
+    return versions;
+  }
+
+  private void enqueue(AnyType x, boolean insert) {
+    writeLock.lock();
+    try {
+      if (pendingSize == pendingItems.length) {
+        pendingItems = Arrays.copyOf(pendingItems, pendingSize * 2);
+        pendingInserts = Arrays.copyOf(pendingInserts, pendingSize * 2);
+      }
+      pendingItems[pendingSize] = x;
+      pendingInserts[pendingSize++] = insert;
+      if (pendingSize >= maxPending)
+        publish();
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  private static final int DEFAULT_MAX_PENDING = 1024;
+
+  private final IntFunction<ProbingHashTable<AnyType>> tableFactory;
+  private final int maxPending;
+  private final ReentrantLock writeLock = new ReentrantLock();
+  private volatile ProbingHashTable<AnyType> published; // Never modified once published
+  private Object[] pendingItems; // Queued writes, guarded by writeLock
+  private boolean[] pendingInserts; // true for insert, false for remove
+  private int pendingSize;
+  private volatile long versions;
+
+}
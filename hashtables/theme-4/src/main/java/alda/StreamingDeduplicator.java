@@ -0,0 +1,369 @@
+package alda;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Removes duplicate books from a stream too large to keep in memory, such as
+ * the duplicates BookHashTest injects but at billions of records. Two books are
+ * duplicates when they are equal, that is when isbn, title and content match.
+ *
+ * Books are first checked against an in-memory set holding only a 64-bit
+ * fingerprint of the equals fields per book, and unique books are passed on to
+ * the consumer right away. When the set reaches the memory limit it is frozen:
+ * later books whose fingerprint is in the set are still counted as duplicates,
+ * while the rest are spilled to partition files on disk chosen by the top bits
+ * of the fingerprint, so equal books always end up in the same partition.
+ * finish then merges the partitions one at a time by loading each into a
+ * QuadraticProbingHashTable of books, comparing with equals. A partition that
+ * is too large for the memory limit is split again on the next fingerprint
+ * bits.
+ *
+ * Counts are exact for the spilled books. In the in-memory phase two different
+ * books with the same fingerprint would be taken for duplicates; with 64-bit
+ * fingerprints that is expected about n * n / 2^65 times for n books held.
+ */
+public class StreamingDeduplicator implements Consumer<Book>, AutoCloseable {
+
+  /**
+   * Construct a deduplicator.
+   *
+   * @param spillDirectory the directory to create spill files in.
+   * @param memoryBytes    the memory for the fingerprint set and for merging
+   *                       one partition; the partition write buffers come on
+   *                       top of this.
+   * @param unique         receives each unique book once.
+   * @throws IOException if no spill directory can be created.
+   */
+  public StreamingDeduplicator(Path spillDirectory, long memoryBytes, Consumer<? super Book> unique)
+      throws IOException {
+    if (memoryBytes < MINIMUM_MEMORY)
+      throw new IllegalArgumentException("At least " + MINIMUM_MEMORY + " bytes of memory are needed");
+    this.memoryBytes = memoryBytes;
+    this.unique = unique;
+    // A full set must still be at most half full, so it never grows
+    long slots = Long.highestOneBit(Math.min(memoryBytes / 8, 1 << 30));
+    fingerprints = new LongProbingHashSet((int) slots);
+    maxFingerprints = (int) (slots / 2);
+    directory = Files.createTempDirectory(spillDirectory, "dedup");
+  }
+
+  /**
+   * Counters from one run.
+   */
+  public static class Result {
+    private long records;
+    private long unique;
+    private long duplicates;
+    private long spilled;
+    private long partitions;
+
+    public long records() {
+      return records;
+    }
+
+    public long unique() {
+      return unique;
+    }
+
+    public long duplicates() {
+      return duplicates;
+    }
+
+    /**
+     * @return the number of books written to partition files.
+     */
+    public long spilled() {
+      return spilled;
+    }
+
+    /**
+     * @return the number of partition files written, including splits.
+     */
+    public long partitions() {
+      return partitions;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("records: %d unique: %d duplicates: %d spilled: %d partitions: %d", records, unique,
+          duplicates, spilled, partitions);
+    }
+  }
+
+  /**
+   * Process one book.
+   *
+   * @param book the book.
+   * @throws UncheckedIOException if a partition file cannot be written.
+   */
+  @Override
+  public void accept(Book book) {
+    if (finished)
+      throw new IllegalStateException("Already finished");
+    result.records++;
+    long fp = fingerprint(book);
+    if (fingerprints.contains(fp)) {
+      result.duplicates++;
+      return;
+    }
+
+    if (fingerprints.size() < maxFingerprints) {
+      fingerprints.add(fp);
+      emit(book);
+      return;
+    }
+
+    try {
+      if (partitions == null)
+        partitions = new Partitions();
+      write(partitions.outs[partitionOf(fp, 0)], fp, book);
+      result.spilled++;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Process a stream of books and finish.
+   *
+   * @param books the books.
+   * @return the counters.
+   * @throws IOException if the spill files cannot be written or read.
+   */
+  public Result deduplicate(Stream<Book> books) throws IOException {
+    try {
+      books.forEachOrdered(this);
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+    return finish();
+  }
+
+  /**
+   * Merge the spilled partitions, passing their unique books on.
+   *
+   * @return the counters.
+   * @throws IOException if the spill files cannot be read.
+   */
+  public Result finish() throws IOException {
+    if (finished)
+      return result;
+    finished = true;
+    // The fingerprints are not needed for the merge, which gets all the memory
+    fingerprints = null;
+    if (partitions != null) {
+      Path[] files = partitions.close();
+      partitions = null;
+      for (Path file : files)
+        merge(file, 1);
+    }
+    return result;
+  }
+
+  /**
+   * Delete any spill files left.
+   */
+  @Override
+  public void close() throws IOException {
+    if (partitions != null) {
+      partitions.close();
+      partitions = null;
+    }
+    try (Stream<Path> files = Files.list(directory)) {
+      for (Path file : (Iterable<Path>) files::iterator)
+        Files.delete(file);
+    }
+    Files.deleteIfExists(directory);
+  }
+
+  /**
+   * Compute a 64-bit fingerprint of the fields used by Book.equals. The length
+   * of each field is mixed in so that moving characters between fields changes
+   * the fingerprint.
+   */
+  static long fingerprint(Book book) {
+    long h = FNV_OFFSET;
+    String isbn = book.getIsbn().toString();
+    for (int i = 0; i < isbn.length(); i++)
+      h = (h ^ isbn.charAt(i)) * FNV_PRIME;
+    h = mix(h, book.getTitle());
+    h = mix(h, book.getContent());
+    // Final avalanche, so every bit can be used as a partition bit
+    h ^= h >>> 33;
+    h *= 0xFF51AFD7ED558CCDL;
+    h ^= h >>> 33;
+    h *= 0xC4CEB9FE1A85EC53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  private static long mix(long h, MyString s) {
+    int length = s.length();
+    h = (h ^ length) * FNV_PRIME;
+    for (int i = 0; i < length; i++)
+      h = (h ^ s.charAt(i)) * FNV_PRIME;
+    return h;
+  }
+
+  private void emit(Book book) {
+    result.unique++;
+    unique.accept(book);
+  }
+
+  /**
+   * Get the partition of a fingerprint at a split depth, from the fingerprint
+   * bits below the ones used at lower depths.
+   */
+  private static int partitionOf(long fp, int depth) {
+    return (int) ((fp << (depth * PARTITION_BITS)) >>> (64 - PARTITION_BITS));
+  }
+
+  /**
+   * Merge a partition, or split it further if it does not fit in memory.
+   */
+  private void merge(Path file, int depth) throws IOException {
+    long bytes = Files.size(file);
+    if (bytes == 0) {
+      Files.delete(file);
+      return;
+    }
+
+    if (bytes * MERGE_OVERHEAD > memoryBytes && depth < MAXIMUM_DEPTH) {
+      Partitions children = new Partitions();
+      try (DataInputStream in = openInput(file)) {
+        RecordReader reader = new RecordReader(in);
+        while (reader.next())
+          write(children.outs[partitionOf(reader.fp, depth)], reader.fp, reader.book);
+      }
+      Files.delete(file);
+      for (Path child : children.close())
+        merge(child, depth + 1);
+      return;
+    }
+
+    ProbingHashTable<Book> table = new QuadraticProbingHashTable<>();
+    try (DataInputStream in = openInput(file)) {
+      RecordReader reader = new RecordReader(in);
+      while (reader.next())
+        if (table.insert(reader.book))
+          emit(reader.book);
+        else
+          result.duplicates++;
+    }
+    Files.delete(file);
+  }
+
+  /**
+   * One set of partition files being written.
+   */
+  private class Partitions {
+    final Path[] files = new Path[1 << PARTITION_BITS];
+    final DataOutputStream[] outs = new DataOutputStream[files.length];
+
+    Partitions() throws IOException {
+      for (int i = 0; i < files.length; i++) {
+        files[i] = directory.resolve("partition-" + (fileCount++));
+        outs[i] = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(files[i]), BUFFER_SIZE));
+      }
+      result.partitions += files.length;
+    }
+
+    Path[] close() throws IOException {
+      for (DataOutputStream out : outs)
+        out.close();
+      return files;
+    }
+  }
+
+  private static DataInputStream openInput(Path file) throws IOException {
+    return new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE));
+  }
+
+  private static void write(DataOutputStream out, long fp, Book book) throws IOException {
+    out.writeLong(fp);
+    out.writeChars(book.getIsbn().toString());
+    out.writeInt(book.getPrice());
+    writeString(out, book.getTitle());
+    writeString(out, book.getAuthor());
+    writeString(out, book.getContent());
+  }
+
+  private static void writeString(DataOutputStream out, MyString s) throws IOException {
+    int length = s.length();
+    out.writeInt(length);
+    for (int i = 0; i < length; i++)
+      out.writeChar(s.charAt(i));
+  }
+
+  /**
+   * Reads the records of one partition file. The strings of all books are
+   * packed into one arena per file.
+   */
+  private static class RecordReader {
+    private final DataInputStream in;
+    private final CharArena arena = new CharArena();
+    private char[] chars = new char[256];
+    long fp;
+    Book book;
+
+    RecordReader(DataInputStream in) {
+      this.in = in;
+    }
+
+    boolean next() throws IOException {
+      try {
+        fp = in.readLong();
+      } catch (EOFException e) {
+        return false;
+      }
+      for (int i = 0; i < 10; i++)
+        chars[i] = in.readChar();
+      ISBN10 isbn = new ISBN10(chars, 0);
+      int price = in.readInt();
+      MyString title = readString();
+      MyString author = readString();
+      MyString content = readString();
+      book = new Book(title, author, isbn, content, price);
+      return true;
+    }
+
+    private MyString readString() throws IOException {
+      int length = in.readInt();
+      if (chars.length < length)
+        chars = new char[Math.max(length, chars.length * 2)];
+      for (int i = 0; i < length; i++)
+        chars[i] = in.readChar();
+      return arena.allocate(chars, 0, length);
+    }
+  }
+
+  private static final long MINIMUM_MEMORY = 1 << 12;
+  private static final int PARTITION_BITS = 6;
+  private static final int MAXIMUM_DEPTH = 64 / PARTITION_BITS;
+  private static final int BUFFER_SIZE = 1 << 16;
+  // A partition loaded into a table takes about this many times its file size
+  private static final int MERGE_OVERHEAD = 3;
+  private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+  private static final long FNV_PRIME = 0x100000001B3L;
+
+  private final long memoryBytes;
+  private final Consumer<? super Book> unique;
+  private final Path directory; // Private spill directory, deleted by close
+  private final int maxFingerprints;
+  private final Result result = new Result();
+  private LongProbingHashSet fingerprints; // Frozen once full
+  private Partitions partitions; // First level partitions, opened at the first spill
+  private int fileCount;
+  private boolean finished;
+
+}
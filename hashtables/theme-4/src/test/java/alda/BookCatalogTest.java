@@ -0,0 +1,66 @@
+package alda;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class BookCatalogTest {
+
+  private final Book second = new Book("Data Structures and Algorithm Analysis in Java", "Mark Allen Weiss",
+      "0321373197", "Long string containg entire book content.", 550);
+  private final Book third = new Book("Data Structures and Algorithm Analysis in Java", "Mark Allen Weiss",
+      "0273752111", "Long string containg entire book content.", 650);
+  private final Book cpp = new Book("Data Structures and Algorithm Analysis in C++", "Mark Allen Weiss",
+      "013284737X", "Long string containg entire book content.", 700);
+
+  private static Set<Book> set(List<Book> books) {
+    return new HashSet<>(books);
+  }
+
+  @Test
+  public void testSecondaryLookups() {
+    BookCatalog catalog = new BookCatalog();
+    catalog.insert(second);
+    catalog.insert(third);
+    catalog.insert(cpp);
+
+    assertEquals(3, catalog.size());
+    assertEquals(Set.of(second, third, cpp), set(catalog.byAuthor(new MyString("Mark Allen Weiss"))));
+    assertEquals(Set.of(second, third),
+        set(catalog.byTitle(new MyString("Data Structures and Algorithm Analysis in Java"))));
+    assertTrue(catalog.byAuthor(new MyString("Donald Knuth")).isEmpty());
+  }
+
+  @Test
+  public void testRemoveAndReplaceKeepIndexesConsistent() {
+    BookCatalog catalog = new BookCatalog();
+    catalog.insert(second);
+    catalog.insert(cpp);
+
+    assertSame(cpp, catalog.remove(cpp.getIsbn()));
+    assertNull(catalog.remove(cpp.getIsbn()));
+    assertTrue(catalog.byTitle(new MyString("Data Structures and Algorithm Analysis in C++")).isEmpty());
+    assertEquals(List.of(second), catalog.byAuthor(new MyString("Mark Allen Weiss")));
+
+    Book renamed = new Book("Algorithms", "Someone Else", "0321373197", "Other content.", 100);
+    assertSame(second, catalog.insert(renamed));
+    assertEquals(1, catalog.size());
+    assertTrue(catalog.byAuthor(new MyString("Mark Allen Weiss")).isEmpty());
+    assertEquals(List.of(renamed), catalog.byAuthor(new MyString("Someone Else")));
+  }
+
+  @Test
+  public void testSetPrice() {
+    BookCatalog catalog = new BookCatalog();
+    catalog.insert(third);
+
+    assertTrue(catalog.setPrice(new ISBN10("0273752111"), 675));
+    assertFalse(catalog.setPrice(new ISBN10("0321373197"), 675));
+    assertEquals(675, catalog.get(third.getIsbn()).getPrice());
+    assertEquals(675, catalog.byAuthor(new MyString("Mark Allen Weiss")).get(0).getPrice());
+  }
+
+}
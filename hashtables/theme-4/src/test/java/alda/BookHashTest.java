@@ -129,6 +129,10 @@ public class BookHashTest {
     printDistributionAnalysis(hashCodes);
     printUniformityTest(hashCodes);
     printWorstCollisions(hashToBooksMap);
+
+    // Same data through the generic toolkit, in machine-readable form
+    System.out.println();
+    System.out.println(new HashQualityAnalyzer<Book>(Book::hashCode).analyze(books).toJson());
   }
 
   /**
@@ -0,0 +1,74 @@
+package alda;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class CatalogLoaderTest {
+
+  @TempDir
+  Path dir;
+
+  private static String isbn(int i) {
+    String nineDigits = String.format("%09d", i);
+    int sum = 0;
+    for (int pos = 0; pos < 9; pos++)
+      sum += (nineDigits.charAt(pos) - '0') * (10 - pos);
+    int checkDigit = (11 - (sum % 11)) % 11;
+    return nineDigits + (checkDigit == 10 ? "X" : String.valueOf(checkDigit));
+  }
+
+  @Test
+  public void testIsbnValidation() {
+    assertTrue(ISBN10.isValid("0321373197".toCharArray(), 0));
+    assertTrue(ISBN10.isValid("xx013284737X".toCharArray(), 2));
+    assertFalse(ISBN10.isValid("0321373198".toCharArray(), 0));
+    assertFalse(ISBN10.isValid("03213731:7".toCharArray(), 0));
+    assertFalse(ISBN10.isValid("013284737:".toCharArray(), 0));
+    assertFalse(ISBN10.isValid("013284737x".toCharArray(), 0));
+    assertThrows(IllegalArgumentException.class, () -> new ISBN10("0321373198"));
+    for (int i = 0; i < 10_000; i++)
+      assertTrue(ISBN10.isValid(isbn(i * 7919).toCharArray(), 0));
+  }
+
+  @Test
+  public void testParallelLoad() throws IOException, InterruptedException {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 5000; i++) {
+      sb.append(isbn(i)).append('\t').append("Titel ").append(i % 300).append(" åäö 📚").append('\t')
+          .append("Author ").append(i % 50).append('\t').append(i % 100).append('\t')
+          .append("Content ").append(i).append(i % 2 == 0 ? "\r\n" : "\n");
+    }
+    // Duplicates, a long line and rejected lines
+    for (int i = 0; i < 100; i++)
+      sb.append(isbn(i)).append("\tTitel ").append(i % 300).append(" åäö 📚\tAuthor ").append(i % 50)
+          .append("\t7\tContent ").append(i).append('\n');
+    sb.append(isbn(99_999)).append("\tLong\tAuthor\t1\t").append("x".repeat(3 << 20)).append('\n');
+    sb.append("0321373198\tBad isbn\tAuthor\t1\tContent\n");
+    sb.append(isbn(1)).append("\tBad price\tAuthor\tabc\tContent\n");
+    sb.append("Missing fields\n\n");
+    sb.append(isbn(123_456)).append("\tNo newline\tAuthor\t1\tLast");
+    Path file = dir.resolve("catalog.tsv");
+    Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+
+    ProbingHashTable<Book> table = new QuadraticProbingHashTable<>();
+    CatalogLoader.Result result = new CatalogLoader(4, 4096).load(file, table);
+
+    assertEquals(5000 + 100 + 1 + 3 + 1, result.lines());
+    assertEquals(3, result.rejected());
+    assertEquals(100, result.duplicates());
+    assertEquals(5002, result.inserted());
+    assertEquals(5002, table.size());
+
+    assertTrue(table.contains(new Book("Titel 42 åäö 📚", "Author 42", isbn(42), "Content 42", 0)));
+    assertTrue(table.contains(new Book("Titel 43 åäö 📚", "Author 43", isbn(43), "Content 43", 0)));
+    assertTrue(table.contains(new Book("No newline", "Author", isbn(123_456), "Last", 0)));
+    assertTrue(table.contains(new Book("Long", "Author", isbn(99_999), "x".repeat(3 << 20), 0)));
+  }
+
+}
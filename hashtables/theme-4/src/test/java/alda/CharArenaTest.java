@@ -0,0 +1,53 @@
+package alda;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+
+public class CharArenaTest {
+
+  @Test
+  public void testArenaStringsMatchOwnedStrings() {
+    CharArena arena = new CharArena(16);
+    String[] words = { "", "a", "hash", "Data Structures and Algorithm Analysis in Java", "table", "hash" };
+
+    for (String word : words) {
+      MyString owned = new MyString(word);
+      MyString packed = arena.allocate(word);
+      assertEquals(owned, packed);
+      assertEquals(packed, owned);
+      assertEquals(owned.hashCode(), packed.hashCode());
+      assertEquals(word, packed.toString());
+      assertEquals(word.length(), packed.length());
+    }
+  }
+
+  @Test
+  public void testNeighboursInChunkAreDistinct() {
+    CharArena arena = new CharArena(64);
+    MyString ab = arena.allocate("ab");
+    MyString abc = arena.allocate("abc");
+    MyString c = arena.allocate(new char[] { 'x', 'c', 'y' }, 1, 2);
+
+    assertNotEquals(ab, abc);
+    assertEquals('c', abc.charAt(2));
+    assertEquals(new MyString("c"), c);
+    assertEquals(5 + 1, arena.allocated());
+  }
+
+  @Test
+  public void testBookInArena() {
+    CharArena arena = new CharArena();
+    Book packed = new Book(arena, "Data Structures and Algorithm Analysis in Java", "Mark Allen Weiss",
+        "0321373197", "Long string containg entire book content.", 550);
+    Book owned = new Book("Data Structures and Algorithm Analysis in Java", "Mark Allen Weiss",
+        "0321373197", "Long string containg entire book content.", 550);
+
+    assertEquals(owned, packed);
+    assertEquals(owned.hashCode(), packed.hashCode());
+
+    ProbingHashTable<Book> books = new QuadraticProbingHashTable<>();
+    assertTrue(books.insert(packed));
+    assertTrue(books.contains(owned));
+  }
+
+}
@@ -0,0 +1,76 @@
+package alda;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class HashQualityAnalyzerTest {
+
+  private static final HashQualityAnalyzer.BitFlipper<Integer> INT_BITS = new HashQualityAnalyzer.BitFlipper<>() {
+    @Override
+    public int bits(Integer key) {
+      return 32;
+    }
+
+    @Override
+    public Integer flip(Integer key, int bit) {
+      return key ^ (1 << bit);
+    }
+  };
+
+  private static List<Integer> keys(int n) {
+    List<Integer> keys = new ArrayList<>(n);
+    for (int i = 0; i < n; i++)
+      keys.add(i * 16);
+    return keys;
+  }
+
+  private static int mix(int x) {
+    x ^= x >>> 16;
+    x *= 0x85EBCA6B;
+    x ^= x >>> 13;
+    x *= 0xC2B2AE35;
+    return x ^ (x >>> 16);
+  }
+
+  @Test
+  public void testGoodHashPasses() {
+    HashQualityAnalyzer<Integer> analyzer = new HashQualityAnalyzer<>(HashQualityAnalyzerTest::mix);
+    analyzer.setAvalanche(INT_BITS, 2000);
+    HashQualityReport report = analyzer.analyze(keys(200_000));
+
+    assertEquals(200_000, report.distinctKeys());
+    assertTrue(report.passes(), report.toJson());
+    assertEquals(0.5, report.avalancheMean(), 0.02);
+    assertEquals(3, report.probes().length);
+  }
+
+  @Test
+  public void testBadHashesFail() {
+    // Only the high bits survive, so many keys collide
+    HashQualityReport truncated = new HashQualityAnalyzer<Integer>(k -> k & ~0xFFF).analyze(keys(50_000));
+    assertFalse(truncated.passes());
+    assertTrue(truncated.collisions() > 40_000);
+
+    // Identity looks perfectly spread but has no avalanche at all
+    HashQualityAnalyzer<Integer> identity = new HashQualityAnalyzer<>(k -> k);
+    identity.setAvalanche(INT_BITS, 1000);
+    HashQualityReport report = identity.analyze(keys(50_000));
+    assertEquals(0, report.collisions());
+    assertFalse(report.passes());
+    assertTrue(report.avalancheWorstBias() > 0.4);
+  }
+
+  @Test
+  public void testDuplicatesAreCountedOnce() {
+    List<Integer> keys = keys(1000);
+    keys.addAll(keys(500));
+    HashQualityReport report = new HashQualityAnalyzer<Integer>(HashQualityAnalyzerTest::mix).analyze(keys);
+    assertEquals(1000, report.distinctKeys());
+    assertTrue(report.toJson().startsWith("{\"keys\":1500,\"distinctKeys\":1000,"));
+    assertTrue(report.toJson().contains("\"avalancheMean\":null"));
+  }
+
+}
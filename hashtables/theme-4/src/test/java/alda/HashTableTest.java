@@ -4,7 +4,11 @@ import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.*;
 
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Random;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
 
 /**
  * @author henrikbe
@@ -49,6 +53,51 @@ public class HashTableTest {
     testFunctionality(new DoubleHashingProbingHashTable<>());
   }
 
+  private void testIteration(ProbingHashTable<Integer> sut) {
+    Random rnd = new Random(42);
+    HashSet<Integer> oracle = new HashSet<>();
+    for (int n = 0; n < 200_000; n++) {
+      int in = rnd.nextInt(1_000_000);
+      oracle.add(in);
+      sut.insert(in);
+      if (rnd.nextInt(4) == 0) {
+        int out = rnd.nextInt(1_000_000);
+        oracle.remove(out);
+        sut.remove(out);
+      }
+    }
+
+    HashSet<Integer> iterated = new HashSet<>();
+    for (Integer x : sut)
+      assertTrue(iterated.add(x));
+    assertEquals(oracle, iterated);
+
+    assertEquals(oracle, sut.stream().parallel().collect(Collectors.toSet()));
+    assertEquals(oracle.stream().mapToLong(Integer::longValue).sum(),
+        sut.stream().parallel().mapToLong(Integer::longValue).sum());
+
+    Spliterator<Integer> spliterator = sut.spliterator();
+    assertNotNull(spliterator.trySplit());
+    assertTrue(spliterator.hasCharacteristics(Spliterator.DISTINCT));
+  }
+
+  @Test
+  public void testIterationOfQuadraticProbingHashTable() {
+    testIteration(new QuadraticProbingHashTable<>());
+  }
+
+  @Test
+  public void testIterationOfLinearProbingHashTable() {
+    testIteration(new LinearProbingHashTable<>());
+  }
+
+  @Test
+  public void testIterationOfEmptyTable() {
+    Iterator<Integer> it = new DoubleHashingProbingHashTable<Integer>().iterator();
+    assertFalse(it.hasNext());
+    assertThrows(NoSuchElementException.class, it::next);
+  }
+
   private static class HashItem {
     private final int hashCode;
     private int value;
@@ -0,0 +1,157 @@
+package alda;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+public class InvertedIndexTest {
+
+  private final Book weiss = new Book("Data Structures and Algorithm Analysis in Java", "Mark Allen Weiss",
+      "0321373197", "Hash tables, heaps and trees. Hashing is fast.", 550);
+  private final Book knuth = new Book("The Art of Computer Programming", "Donald Knuth",
+      "0201896834", "Sorting and searching, including hashing and trees.", 900);
+  private final Book clrs = new Book("Introduction to Algorithms", "Cormen",
+      "0262033844", "Graphs, heaps, dynamic programming.", 800);
+
+  @Test
+  public void testAndOr() {
+    InvertedIndex index = new InvertedIndex();
+    index.add(weiss);
+    index.add(knuth);
+    index.add(clrs);
+
+    assertEquals(List.of(weiss, knuth), index.and("hashing", "TREES"));
+    assertEquals(List.of(weiss, clrs), index.and("heaps"));
+    assertEquals(List.of(), index.and("heaps", "sorting"));
+    assertEquals(List.of(), index.and("missing"));
+    assertEquals(List.of(weiss, knuth, clrs), index.or("heaps", "sorting"));
+    assertEquals(List.of(clrs), index.or("graphs", "missing"));
+  }
+
+  @Test
+  public void testRemoveAndReplace() {
+    InvertedIndex index = new InvertedIndex();
+    index.add(weiss);
+    index.add(knuth);
+    int terms = index.termCount();
+
+    index.add(clrs);
+    assertTrue(index.remove(clrs.getIsbn()));
+    assertFalse(index.remove(clrs.getIsbn()));
+    assertEquals(terms, index.termCount());
+    assertEquals(List.of(), index.or("graphs"));
+    assertEquals(List.of(weiss), index.and("heaps"));
+
+    Book newEdition = new Book(weiss.getTitle().toString(), weiss.getAuthor().toString(),
+        "0321373197", "Only graphs now.", 600);
+    index.add(newEdition);
+    assertEquals(2, index.size());
+    assertEquals(List.of(newEdition), index.and("graphs"));
+    assertEquals(List.of(knuth), index.or("heaps", "hashing"));
+  }
+
+  @Test
+  public void testReplaceChurnCompactsIds() {
+    InvertedIndex index = new InvertedIndex();
+    index.add(weiss);
+    index.add(knuth);
+    index.add(clrs);
+    int capacity = index.idCapacity();
+    for (int i = 0; i < 10_000; i++)
+      index.add(i % 2 == 0 ? weiss : knuth);
+
+    assertEquals(capacity, index.idCapacity());
+    assertEquals(3, index.size());
+    // Added order is now clrs, weiss, knuth
+    assertEquals(List.of(clrs, weiss, knuth), index.or("heaps", "sorting"));
+    assertEquals(List.of(weiss, knuth), index.and("hashing", "trees"));
+    assertTrue(index.remove(weiss.getIsbn()));
+    assertEquals(List.of(knuth), index.or("hashing"));
+  }
+
+  @Test
+  public void testQueriesAgainstOracle() {
+    Random rnd = new Random(42);
+    String[] words = new String[40];
+    for (int i = 0; i < words.length; i++)
+      words[i] = "w" + i;
+    InvertedIndex index = new InvertedIndex();
+    // Oracle: the live books in the order they were added
+    List<Book> added = new ArrayList<>();
+    for (int op = 0; op < 3000; op++) {
+      String isbn = isbn(rnd.nextInt(200));
+      if (rnd.nextInt(4) == 0) {
+        boolean present = added.removeIf(b -> b.getIsbn().toString().equals(isbn));
+        assertEquals(present, index.remove(new ISBN10(isbn)));
+      } else {
+        StringBuilder content = new StringBuilder();
+        for (int w = rnd.nextInt(8); w >= 0; w--)
+          content.append(words[rnd.nextInt(words.length)]).append(' ');
+        Book book = new Book("T", "A", isbn, content.toString(), 1);
+        added.removeIf(b -> b.getIsbn().toString().equals(isbn));
+        added.add(book);
+        index.add(book);
+      }
+
+      String[] query = new String[1 + rnd.nextInt(4)];
+      for (int q = 0; q < query.length; q++)
+        query[q] = words[rnd.nextInt(words.length)];
+      List<Book> expectedOr = new ArrayList<>();
+      List<Book> expectedAnd = new ArrayList<>();
+      for (Book book : added) {
+        List<String> terms = List.of(book.getContent().toString().split(" "));
+        if (Arrays.stream(query).anyMatch(terms::contains))
+          expectedOr.add(book);
+        if (Arrays.stream(query).allMatch(terms::contains))
+          expectedAnd.add(book);
+      }
+      assertEquals(expectedOr, index.or(query));
+      assertEquals(expectedAnd, index.and(query));
+    }
+    assertEquals(added.size(), index.size());
+  }
+
+  /**
+   * A valid ISBN-10 made from a number, with its check digit.
+   */
+  private static String isbn(int number) {
+    String digits = String.format("%09d", number);
+    int sum = 0;
+    for (int i = 0; i < 9; i++)
+      sum += (digits.charAt(i) - '0') * (10 - i);
+    int check = (11 - sum % 11) % 11;
+    return digits + (check == 10 ? "X" : String.valueOf(check));
+  }
+
+  @Test
+  public void testPostingListAgainstOracle() {
+    Random rnd = new Random(42);
+    PostingList postings = new PostingList();
+    TreeSet<Integer> oracle = new TreeSet<>();
+
+    int next = 0;
+    for (int n = 0; n < 2000; n++) {
+      next += 1 + rnd.nextInt(rnd.nextBoolean() ? 3 : 100_000);
+      postings.add(next);
+      oracle.add(next);
+
+      if (rnd.nextInt(3) == 0) {
+        int out = rnd.nextInt(next + 1);
+        assertEquals(oracle.remove(out), postings.remove(out));
+      }
+    }
+
+    List<Integer> decoded = new ArrayList<>();
+    for (int id : postings.toArray())
+      decoded.add(id);
+    assertEquals(new ArrayList<>(oracle), decoded);
+    assertEquals(oracle.size(), postings.size());
+    assertTrue(postings.encodedBytes() < 4 * postings.size());
+  }
+
+}
@@ -0,0 +1,55 @@
+package alda;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+
+import java.util.Random;
+
+public class ProbingHashCacheTest {
+
+  @Test
+  public void testNeverGrowsPastMaximum() {
+    ProbingHashCache<Integer, String> cache = new ProbingHashCache<>(100, k -> "v" + k,
+        LinearProbingHashMap::new);
+    Random rnd = new Random(42);
+
+    for (int n = 0; n < 100_000; n++) {
+      int key = rnd.nextInt(1000);
+      assertEquals("v" + key, cache.get(key));
+      assertTrue(cache.size() <= 100);
+    }
+    assertEquals(100_000, cache.hitCount() + cache.missCount());
+    assertEquals(cache.missCount() - cache.size(), cache.evictionCount());
+    assertTrue(cache.hitCount() > 0);
+  }
+
+  @Test
+  public void testReferencedEntrySurvivesEviction() {
+    ProbingHashCache<Integer, String> cache = new ProbingHashCache<>(3, null);
+    cache.put(1, "a");
+    cache.put(2, "b");
+    cache.put(3, "c");
+    for (int n = 0; n < 10; n++) {
+      assertEquals("a", cache.get(1));
+      cache.put(100 + n, "x");
+      assertEquals(3, cache.size());
+    }
+    assertEquals("a", cache.get(1));
+    assertEquals(10, cache.evictionCount());
+  }
+
+  @Test
+  public void testMissWithoutLoader() {
+    ProbingHashCache<String, String> cache = new ProbingHashCache<>(2, null);
+    assertNull(cache.get("a"));
+    cache.put("a", "1");
+    cache.put("a", "2");
+    assertEquals("2", cache.get("a"));
+    assertEquals("2", cache.invalidate("a"));
+    assertNull(cache.get("a"));
+    assertEquals(1, cache.hitCount());
+    assertEquals(2, cache.missCount());
+    assertEquals(0, cache.evictionCount());
+  }
+
+}
@@ -0,0 +1,74 @@
+package alda;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+
+import java.util.HashMap;
+import java.util.Random;
+
+public class ProbingHashMapTest {
+
+  private void testFunctionality(ProbingHashMap<Integer, String> sut) {
+    final int MAX_VALUE = 500;
+
+    Random rnd = new Random(42);
+    HashMap<Integer, String> oracle = new HashMap<>();
+
+    for (int n = 0; n < 5000; n++) {
+      assertEquals(oracle.size(), sut.size());
+
+      int in = rnd.nextInt(MAX_VALUE);
+      String value = "v" + n;
+      assertEquals(oracle.put(in, value), sut.put(in, value));
+
+      int check = rnd.nextInt(MAX_VALUE);
+      assertEquals(oracle.get(check), sut.get(check));
+      assertEquals(oracle.containsKey(check), sut.containsKey(check));
+
+      int computed = rnd.nextInt(MAX_VALUE);
+      assertEquals(oracle.computeIfAbsent(computed, k -> "c" + k),
+          sut.computeIfAbsent(computed, k -> "c" + k));
+
+      do {
+        int out = rnd.nextInt(MAX_VALUE);
+        assertEquals(oracle.remove(out), sut.remove(out));
+      } while (rnd.nextBoolean());
+    }
+  }
+
+  @Test
+  public void testFunctionalityOfQuadraticProbingHashMap() {
+    testFunctionality(new QuadraticProbingHashMap<>());
+  }
+
+  @Test
+  public void testFunctionalityOfLinearProbingHashMap() {
+    testFunctionality(new LinearProbingHashMap<>());
+  }
+
+  @Test
+  public void testFunctionalityOfDoubleHashingProbingHashMap() {
+    testFunctionality(new DoubleHashingProbingHashMap<>());
+  }
+
+  @Test
+  public void testComputeIfAbsentWithNullDoesNotInsert() {
+    ProbingHashMap<String, String> map = new QuadraticProbingHashMap<>();
+    assertNull(map.computeIfAbsent("a", k -> null));
+    assertEquals(0, map.size());
+    assertFalse(map.containsKey("a"));
+  }
+
+  @Test
+  public void testIsbnToBook() {
+    Book book = new Book("Data Structures and Algorithm Analysis in Java", "Mark Allen Weiss",
+        "0321373197", "Long string containg entire book content.", 550);
+    ProbingHashMap<ISBN10, Book> books = new DoubleHashingProbingHashMap<>();
+
+    assertNull(books.put(book.getIsbn(), book));
+    assertSame(book, books.get(new ISBN10("0321373197")));
+    assertSame(book, books.remove(book.getIsbn()));
+    assertNull(books.get(book.getIsbn()));
+  }
+
+}
@@ -0,0 +1,73 @@
+package alda;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+
+import java.util.HashSet;
+import java.util.Random;
+
+public class SegmentedProbingHashTableTest {
+
+  // Small pages so that the tables span many segments
+  private static final int PAGE_SHIFT = 4;
+
+  private void testFunctionality(SegmentedProbingHashTable<Integer> sut) {
+    final int MAX_VALUE = 500;
+
+    Random rnd = new Random(42);
+    HashSet<Integer> oracle = new HashSet<>();
+
+    for (int n = 0; n < 5000; n++) {
+      assertEquals(oracle.size(), sut.size());
+
+      int in = rnd.nextInt(MAX_VALUE);
+      assertEquals(oracle.add(in), sut.insert(in));
+
+      int check = rnd.nextInt(MAX_VALUE);
+      assertEquals(oracle.contains(check), sut.contains(check));
+
+      do {
+        int out = rnd.nextInt(MAX_VALUE);
+        assertEquals(oracle.remove(out), sut.remove(out));
+      } while (rnd.nextBoolean());
+    }
+
+    HashSet<Integer> iterated = new HashSet<>();
+    for (Integer x : sut)
+      assertTrue(iterated.add(x));
+    assertEquals(oracle, iterated);
+  }
+
+  @Test
+  public void testFunctionalityOfSegmentedQuadraticProbingHashTable() {
+    testFunctionality(new SegmentedQuadraticProbingHashTable<>(5, PAGE_SHIFT));
+  }
+
+  @Test
+  public void testFunctionalityOfSegmentedLinearProbingHashTable() {
+    testFunctionality(new SegmentedLinearProbingHashTable<>(5, PAGE_SHIFT));
+  }
+
+  @Test
+  public void testFunctionalityOfSegmentedDoubleHashingProbingHashTable() {
+    testFunctionality(new SegmentedDoubleHashingProbingHashTable<>(5, PAGE_SHIFT));
+  }
+
+  @Test
+  public void testNextPrimeBeyondIntRange() {
+    long p = SegmentedProbingHashTable.nextPrime(2L * Integer.MAX_VALUE);
+    assertTrue(p > Integer.MAX_VALUE);
+    assertTrue(SegmentedProbingHashTable.isPrime(p));
+  }
+
+  @Test
+  public void testSegmentedArrayLongIndex() {
+    SegmentedArray<String> array = new SegmentedArray<>(3L * Integer.MAX_VALUE, 20);
+    long last = array.length() - 1;
+    array.set(last, "last");
+    assertEquals("last", array.get(last));
+    assertNull(array.get(last - 1));
+    assertNull(array.get(0));
+  }
+
+}
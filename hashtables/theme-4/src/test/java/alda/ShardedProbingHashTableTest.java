@@ -0,0 +1,96 @@
+package alda;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class ShardedProbingHashTableTest {
+
+  @Test
+  public void testSpscQueueWrapsAround() {
+    ShardedProbingHashTable.SpscQueue<Integer> queue = new ShardedProbingHashTable.SpscQueue<>(3);
+    assertEquals(4, queue.capacity());
+    for (int round = 0; round < 10; round++) {
+      for (int i = 0; i < 4; i++)
+        assertTrue(queue.offer(round * 4 + i));
+      assertFalse(queue.offer(-1));
+      for (int i = 0; i < 4; i++)
+        assertEquals(round * 4 + i, queue.poll());
+      assertNull(queue.poll());
+      assertTrue(queue.isEmpty());
+    }
+  }
+
+  @Test
+  public void testBatchesAreAggregatedOverShards() {
+    try (ShardedProbingHashTable<Integer> table = new ShardedProbingHashTable<>(4, LinearProbingHashTable::new, 2)) {
+      // Every value is submitted twice, in different batches
+      for (int round = 0; round < 2; round++)
+        for (int from = 0; from < 100_000; from += 1000) {
+          List<Integer> batch = new ArrayList<>();
+          for (int i = from; i < from + 1000; i++)
+            batch.add(i);
+          table.submitInserts(batch);
+        }
+      assertEquals(100_000, table.size());
+      assertEquals(100_000, table.insertedCount());
+
+      List<Integer> odd = new ArrayList<>();
+      for (int i = 1; i < 100_000; i += 2)
+        odd.add(i);
+      table.submitRemoves(odd);
+      assertEquals(50_000, table.size());
+      assertTrue(table.contains(4));
+      assertFalse(table.contains(5));
+
+      Set<Integer> seen = new HashSet<>();
+      for (Integer x : table)
+        assertTrue(seen.add(x));
+      assertEquals(50_000, seen.size());
+    }
+  }
+
+  @Test
+  public void testShardsAreBalanced() {
+    try (ShardedProbingHashTable<Integer> table = new ShardedProbingHashTable<>(8, QuadraticProbingHashTable::new)) {
+      int[] counts = new int[table.shardCount()];
+      for (int i = 0; i < 80_000; i++)
+        counts[table.shardOf(i)]++;
+      for (int count : counts)
+        assertTrue(Math.abs(count - 10_000) < 1000, "Shard count " + count);
+    }
+  }
+
+  @Test
+  public void testQueriesWhileAnotherThreadSubmits() throws InterruptedException {
+    try (ShardedProbingHashTable<Integer> table = new ShardedProbingHashTable<>(4, LinearProbingHashTable::new)) {
+      Thread producer = new Thread(() -> {
+        for (int from = 0; from < 200_000; from += 500) {
+          List<Integer> batch = new ArrayList<>();
+          for (int i = from; i < from + 500; i++)
+            batch.add(i);
+          table.submitInserts(batch);
+        }
+      });
+      producer.start();
+      // Every query sees whole batches, and never a shard in the middle of a rehash
+      int previous = 0;
+      while (producer.isAlive()) {
+        int size = table.size();
+        assertTrue(size >= previous && size % 500 == 0, "size " + size);
+        if (size > 0)
+          assertTrue(table.contains(size - 1));
+        previous = size;
+      }
+      producer.join();
+      int count = 0;
+      for (Integer x : table)
+        count++;
+      assertEquals(200_000, count);
+    }
+  }
+}
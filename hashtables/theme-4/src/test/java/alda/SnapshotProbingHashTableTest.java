@@ -0,0 +1,82 @@
+package alda;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class SnapshotProbingHashTableTest {
+
+  @Test
+  public void testWritesAreInvisibleUntilPublished() {
+    SnapshotProbingHashTable<String> table = new SnapshotProbingHashTable<>(QuadraticProbingHashTable::new);
+    table.insert("a");
+    table.insert("b");
+    assertFalse(table.contains("a"));
+    assertEquals(0, table.size());
+
+    table.publish();
+    assertTrue(table.contains("a"));
+    assertTrue(table.contains("b"));
+    assertEquals(2, table.size());
+    assertEquals(1, table.versions());
+
+    SnapshotProbingHashTable.Snapshot<String> old = table.snapshot();
+    table.remove("a");
+    table.insert("c");
+    table.publish();
+    assertFalse(table.contains("a"));
+    assertTrue(table.contains("c"));
+    assertTrue(old.contains("a"));
+    assertFalse(old.contains("c"));
+    assertEquals(2, old.stream().count());
+  }
+
+  @Test
+  public void testPublishesWhenBatchIsFull() {
+    SnapshotProbingHashTable<Integer> table = new SnapshotProbingHashTable<>(LinearProbingHashTable::new, 10);
+    for (int i = 0; i < 95; i++)
+      table.insert(i);
+    assertEquals(9, table.versions());
+    assertEquals(90, table.size());
+    table.publish();
+    assertEquals(95, table.size());
+  }
+
+  @Test
+  public void testReadersSeeWholeBatches() throws InterruptedException {
+    SnapshotProbingHashTable<Integer> table = new SnapshotProbingHashTable<>(DoubleHashingProbingHashTable::new);
+    AtomicBoolean done = new AtomicBoolean();
+    AtomicReference<String> failure = new AtomicReference<>();
+
+    Thread[] readers = new Thread[4];
+    for (int t = 0; t < readers.length; t++) {
+      readers[t] = new Thread(() -> {
+        while (!done.get()) {
+          SnapshotProbingHashTable.Snapshot<Integer> snapshot = table.snapshot();
+          // Every batch inserts n and -n - 1 together
+          if (snapshot.size() % 2 != 0)
+            failure.set("Odd size " + snapshot.size());
+          for (Integer x : snapshot)
+            if (!snapshot.contains(-x - 1))
+              failure.set("Half a batch: " + x);
+        }
+      });
+      readers[t].start();
+    }
+
+    for (int n = 0; n < 2000; n++) {
+      table.insert(n);
+      table.insert(-n - 1);
+      table.publish();
+    }
+    done.set(true);
+    for (Thread reader : readers)
+      reader.join();
+
+    assertNull(failure.get());
+    assertEquals(4000, table.size());
+  }
+
+}
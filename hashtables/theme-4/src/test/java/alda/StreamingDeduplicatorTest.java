@@ -0,0 +1,118 @@
+package alda;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+public class StreamingDeduplicatorTest {
+
+  @TempDir
+  Path dir;
+
+  private static String isbn(int i) {
+    String nineDigits = String.format("%09d", i);
+    int sum = 0;
+    for (int pos = 0; pos < 9; pos++)
+      sum += (nineDigits.charAt(pos) - '0') * (10 - pos);
+    int checkDigit = (11 - (sum % 11)) % 11;
+    return nineDigits + (checkDigit == 10 ? "X" : String.valueOf(checkDigit));
+  }
+
+  /**
+   * Like BookHashTest: 85% unique books followed by 15% copies of them, plus
+   * books that differ from another one in the content only.
+   */
+  private static List<Book> books(int count) {
+    List<Book> books = new ArrayList<>();
+    int uniqueCount = (int) (count * 0.85);
+    for (int i = 0; i < uniqueCount; i++)
+      books.add(new Book("The Book of " + i % 500 + " Chapters", "Author " + i % 200, isbn(i),
+          "Content " + i, i % 100));
+    for (int i = 0; i < count - uniqueCount; i++) {
+      Book original = books.get((i * 7) % uniqueCount);
+      books.add(new Book(original.getTitle().toString(), original.getAuthor().toString(),
+          original.getIsbn().toString(), original.getContent().toString(), original.getPrice()));
+    }
+    for (int i = 0; i < 100; i++)
+      books.add(new Book("The Book of " + i % 500 + " Chapters", "Author " + i % 200, isbn(i),
+          "Revised content " + i, i % 100));
+    return books;
+  }
+
+  private void checkAgainstHashSet(List<Book> books, long memoryBytes, boolean expectSpill) throws IOException {
+    Set<Book> expected = new HashSet<>(books);
+    Set<Book> seen = new HashSet<>();
+    StreamingDeduplicator.Result result;
+    try (StreamingDeduplicator dedup = new StreamingDeduplicator(dir, memoryBytes,
+        book -> assertTrue(seen.add(book), "Emitted twice: " + book))) {
+      result = dedup.deduplicate(books.stream());
+    }
+
+    assertEquals(expected, seen);
+    assertEquals(books.size(), result.records());
+    assertEquals(expected.size(), result.unique());
+    assertEquals(books.size() - expected.size(), result.duplicates());
+    assertEquals(expectSpill, result.spilled() > 0);
+    try (Stream<Path> files = Files.list(dir)) {
+      assertEquals(0, files.count());
+    }
+  }
+
+  @Test
+  public void testInMemory() throws IOException {
+    checkAgainstHashSet(books(20_000), 1 << 20, false);
+  }
+
+  @Test
+  public void testSpillAndMerge() throws IOException {
+    checkAgainstHashSet(books(20_000), 1 << 14, true);
+  }
+
+  @Test
+  public void testPartitionsAreSplitWhenTooLarge() throws IOException {
+    List<Book> books = books(20_000);
+    StreamingDeduplicator.Result result;
+    try (StreamingDeduplicator dedup = new StreamingDeduplicator(dir, 1 << 12, book -> {
+    })) {
+      result = dedup.deduplicate(books.stream());
+    }
+    assertTrue(result.partitions() > 64, result.toString());
+    assertEquals(new HashSet<>(books).size(), result.unique());
+  }
+
+  @Test
+  public void testFingerprintSeparatesFields() {
+    Book a = new Book("ab", "x", isbn(1), "c", 1);
+    Book b = new Book("a", "x", isbn(1), "bc", 1);
+    Book c = new Book("ab", "y", isbn(1), "c", 2);
+    assertNotEquals(StreamingDeduplicator.fingerprint(a), StreamingDeduplicator.fingerprint(b));
+    assertEquals(StreamingDeduplicator.fingerprint(a), StreamingDeduplicator.fingerprint(c));
+  }
+
+  @Test
+  public void testLongSet() {
+    LongProbingHashSet set = new LongProbingHashSet(4);
+    for (long i = -1000; i < 1000; i++)
+      assertTrue(set.add(i * 0x10000000000L));
+    for (long i = -1000; i < 1000; i++) {
+      assertFalse(set.add(i * 0x10000000000L));
+      assertTrue(set.contains(i * 0x10000000000L));
+    }
+    assertFalse(set.contains(1));
+    assertEquals(2000, set.size());
+    assertTrue(set.capacity() >= 4000);
+    set.makeEmpty();
+    assertFalse(set.contains(0));
+    assertEquals(0, set.size());
+  }
+
+}
@@ -0,0 +1,119 @@
+package alda.theme5;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The hold workload, replacing the minimum with a larger random key, on
+ * LongDHeap against BlockedLongDHeap with page-sized blocks. The default
+ * sizes are 8 MB to 800 MB of keys; only the largest is far beyond a
+ * last-level cache of a few hundred MB. The forks run on 4 KB pages, with
+ * transparent huge pages off, which is what the blocks are sized for:
+ *
+ * mvn -Pjmh package && java -jar target/benchmarks.jar BlockedDHeapBenchmark
+ *
+ * Running the same sizes with -jvmArgsAppend "-Xmx4g
+ * -XX:+UseTransparentHugePages" is the control: with 2 MB pages a path
+ * touches few pages in either layout, so a gain that is due to the TLB
+ * should shrink. On Linux with hardware counters, -prof perfnorm gives
+ * dTLB-load-misses per operation directly.
+ *
+ * main does not measure anything. It prints the number of distinct 4 KB
+ * pages on a path from the root to a leaf for each layout, from the index
+ * arithmetic alone. The JVM does not align arrays to pages, so the count is
+ * averaged over every 8-byte offset of the array start within a page:
+ *
+ * java -cp target/benchmarks.jar alda.theme5.BlockedDHeapBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g", "-XX:-UseTransparentHugePages" })
+public class BlockedDHeapBenchmark {
+
+  @Param({ "implicit", "blocked" })
+  String layout;
+
+  @Param({ "2", "4" })
+  int d;
+
+  @Param({ "1000000", "10000000", "100000000" })
+  int size;
+
+  private LongDHeap implicit;
+  private BlockedLongDHeap blocked;
+  private long next;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    Random rnd = new Random(42);
+    if (layout.equals("implicit")) {
+      implicit = new LongDHeap(d);
+      for (int i = 0; i < size; i++)
+        implicit.insert(rnd.nextInt(size));
+    } else {
+      blocked = new BlockedLongDHeap(d);
+      for (int i = 0; i < size; i++)
+        blocked.insert(rnd.nextInt(size));
+    }
+    next = size;
+  }
+
+  @Benchmark
+  public long hold() {
+    // Keys grow like timestamps, so every replacement percolates far down
+    next += 1 + (next & 7);
+    if (implicit != null)
+      return implicit.replaceMin(next);
+    return blocked.replaceMin(next);
+  }
+
+  /**
+   * Print the average number of distinct pages on the paths from the root to
+   * the last leaves, the pages one percolateDown touches at most, over all
+   * placements of the array start within a page.
+   */
+  public static void main(String[] args) {
+    int pageKeys = 4096 / Long.BYTES;
+    for (int d : new int[] { 2, 4, 8 })
+      for (int size : new int[] { 1_000_000, 10_000_000, 100_000_000 }) {
+        LongDHeap implicit = new LongDHeap(d);
+        BlockedLongDHeap blocked = new BlockedLongDHeap(d);
+        int paths = 1000;
+        long implicitPages = 0;
+        long blockedPages = 0;
+        for (int start = 0; start < pageKeys; start++)
+          for (int leaf = size - paths; leaf < size; leaf++) {
+            // LongDHeap is 1-based
+            for (int i = leaf + 1, page = -1; i >= 1; i = i == 1 ? 0 : implicit.parentIndex(i))
+              if ((start + i) / pageKeys != page) {
+                page = (start + i) / pageKeys;
+                implicitPages++;
+              }
+            for (int i = leaf, page = -1; i >= 0; i = i == 0 ? -1 : blocked.parentIndex(i))
+              if ((start + i) / pageKeys != page) {
+                page = (start + i) / pageKeys;
+                blockedPages++;
+              }
+          }
+        double placements = (double) paths * pageKeys;
+        System.out.printf("d=%d size=%,d pages per path: implicit %.1f, blocked %.1f%n", d, size,
+            implicitPages / placements, blockedPages / placements);
+      }
+  }
+}
@@ -0,0 +1,208 @@
+package alda.theme5;
+
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares DHeap arities with each other and with java.util.PriorityQueue.
+ *
+ * - fill: insert size keys into an empty heap (insert heavy),
+ * - drain: deleteMin until a heap of size keys is empty (deleteMin heavy),
+ * - hold: deleteMin followed by an insert of a precomputed random key, on a
+ * heap that stays at size keys, as in event simulation.
+ *
+ * Every key is made in setup, so the string runs measure comparisons and not
+ * formatting. drain refills its heap before every invocation, which is long
+ * enough at these sizes; hold refills only before every iteration, since a
+ * single hold takes nanoseconds.
+ *
+ * The key types give a cheap comparison (Integer) and an expensive one
+ * (strings sharing a long prefix). For d the PriorityQueue runs are the same
+ * and only need to be read once. Sizes up to 1e8 can be run with for example
+ * -p size=100000000 -jvmArgs -Xmx32g; they are left out of the default
+ * sweep since they do not fit a default heap. -p branchReduced=false,true
+ * compares the two child scans of DHeap; it has no effect on PriorityQueue.
+ *
+ * mvn -Pjmh package && java -jar target/benchmarks.jar DHeapBenchmark
+ */
+@SuppressWarnings({ "unchecked", "rawtypes" })
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DHeapBenchmark {
+
+  @Param({ "2", "3", "4", "8", "16" })
+  int d;
+
+  @Param({ "1000", "100000", "10000000" })
+  int size;
+
+  @Param({ "integer", "string" })
+  String keyType;
+
+  @Param({ "dheap", "priorityqueue" })
+  String impl;
+
+  @Param({ "false" })
+  boolean branchReduced;
+
+  /**
+   * The two operations the benchmarks need, so both implementations run the
+   * same loops. Only one implementation is loaded per fork.
+   */
+  interface Queue {
+    void insert(Comparable x);
+
+    Comparable deleteMin();
+
+    int size();
+
+    void makeEmpty();
+  }
+
+  private Queue queue;
+  private Comparable[] keys;
+  private Comparable[] replacements;
+
+  @Setup(Level.Trial)
+  public void setUpTrial() {
+    queue = newQueue();
+    Random rnd = new Random(42);
+    keys = new Comparable[size];
+    for (int i = 0; i < size; i++)
+      keys[i] = key(rnd.nextInt(Integer.MAX_VALUE / 2));
+    replacements = new Comparable[REPLACEMENTS];
+    for (int i = 0; i < replacements.length; i++)
+      replacements[i] = key(rnd.nextInt(Integer.MAX_VALUE / 2));
+  }
+
+  Queue newQueue() {
+    if (impl.equals("dheap")) {
+      DHeap<Comparable> heap = new DHeap<>(d);
+      heap.setBranchReducedChildScan(branchReduced);
+      return new Queue() {
+        public void insert(Comparable x) {
+          heap.insert(x);
+        }
+
+        public Comparable deleteMin() {
+          return heap.deleteMin();
+        }
+
+        public int size() {
+          return heap.size();
+        }
+
+        public void makeEmpty() {
+          heap.makeEmpty();
+        }
+      };
+    }
+    PriorityQueue<Comparable> pq = new PriorityQueue<>();
+    return new Queue() {
+      public void insert(Comparable x) {
+        pq.add(x);
+      }
+
+      public Comparable deleteMin() {
+        return pq.poll();
+      }
+
+      public int size() {
+        return pq.size();
+      }
+
+      public void makeEmpty() {
+        pq.clear();
+      }
+    };
+  }
+
+  Queue filledQueue() {
+    Queue filled = newQueue();
+    for (Comparable x : keys)
+      filled.insert(x);
+    return filled;
+  }
+
+  private Comparable key(int value) {
+    if (keyType.equals("integer"))
+      return Integer.valueOf(value);
+    // Zero padded so that string order is numeric order
+    return String.format("%s%010d", PREFIX, value);
+  }
+
+  /**
+   * A full heap for drain, refilled before every invocation.
+   */
+  @State(Scope.Thread)
+  public static class DrainState {
+    Queue queue;
+
+    @Setup(Level.Invocation)
+    public void setUp(DHeapBenchmark benchmark) {
+      queue = benchmark.filledQueue();
+    }
+  }
+
+  /**
+   * A full heap for hold, refilled before every iteration.
+   */
+  @State(Scope.Thread)
+  public static class HoldState {
+    Queue queue;
+    Comparable[] replacements;
+    int next;
+
+    @Setup(Level.Iteration)
+    public void setUp(DHeapBenchmark benchmark) {
+      queue = benchmark.filledQueue();
+      replacements = benchmark.replacements;
+      next = 0;
+    }
+  }
+
+  @Benchmark
+  public int fill() {
+    queue.makeEmpty();
+    for (Comparable x : keys)
+      queue.insert(x);
+    return queue.size();
+  }
+
+  @Benchmark
+  public Object drain(DrainState state) {
+    Queue full = state.queue;
+    Object last = null;
+    while (full.size() > 0)
+      last = full.deleteMin();
+    return last;
+  }
+
+  @Benchmark
+  public Object hold(HoldState state) {
+    Comparable min = state.queue.deleteMin();
+    state.queue.insert(state.replacements[state.next++ & (REPLACEMENTS - 1)]);
+    return min;
+  }
+
+  private static final int REPLACEMENTS = 1 << 16;
+  private static final String PREFIX = "https://catalog.example.com/books/by-isbn/";
+}
@@ -0,0 +1,102 @@
+package alda.theme5;
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Throughput of MultiQueue against one DHeap behind a lock, with every thread
+ * doing an insert followed by a deleteMin on a queue that holds about size
+ * items. The MultiQueue gets c heaps per benchmark thread, as set with -t, and
+ * only the measured implementation is filled, with the same keys for both.
+ * main runs the sweep over 1, 2, 4, ... threads up to the number of
+ * processors:
+ *
+ * mvn -Pjmh package && java -cp target/benchmarks.jar alda.theme5.MultiQueueBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MultiQueueBenchmark {
+
+  @Param({ "multiqueue", "locked" })
+  String impl;
+
+  @Param({ "2" })
+  int c;
+
+  @Param({ "100000" })
+  int size;
+
+  private MultiQueue<Integer> multiQueue;
+  private DHeap<Integer> lockedHeap;
+  private final ReentrantLock lock = new ReentrantLock();
+
+  @Setup(Level.Trial)
+  public void setUp(BenchmarkParams params) {
+    Random rnd = new Random(42);
+    if (impl.equals("multiqueue")) {
+      multiQueue = new MultiQueue<>(c, params.getThreads());
+      for (int i = 0; i < size; i++)
+        multiQueue.insert(rnd.nextInt());
+    } else {
+      lockedHeap = new DHeap<>(4);
+      for (int i = 0; i < size; i++)
+        lockedHeap.insert(rnd.nextInt());
+    }
+  }
+
+  @Benchmark
+  public Integer insertDeleteMin() {
+    int x = ThreadLocalRandom.current().nextInt();
+    if (impl.equals("multiqueue")) {
+      multiQueue.insert(x);
+      return multiQueue.deleteMin();
+    }
+    lock.lock();
+    try {
+      lockedHeap.insert(x);
+    } finally {
+      lock.unlock();
+    }
+    lock.lock();
+    try {
+      return lockedHeap.deleteMin();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    int processors = Runtime.getRuntime().availableProcessors();
+    for (int threads = 1; threads <= processors; threads *= 2) {
+      Options options = new OptionsBuilder()
+          .include(MultiQueueBenchmark.class.getSimpleName())
+          .threads(threads)
+          .build();
+      new Runner(options).run();
+    }
+  }
+}
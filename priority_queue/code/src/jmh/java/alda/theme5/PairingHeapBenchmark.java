@@ -0,0 +1,91 @@
+package alda.theme5;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Merging per-partition queues into a global one, followed by taking the
+ * first few items, as in a merge of partition results. The pairing heaps are
+ * melded; the DHeaps are drained into the global heap item by item.
+ *
+ * mvn -Pjmh package && java -jar target/benchmarks.jar PairingHeapBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PairingHeapBenchmark {
+
+  @Param({ "16", "256" })
+  int partitions;
+
+  @Param({ "1000", "10000" })
+  int partitionSize;
+
+  @Param({ "100" })
+  int taken;
+
+  private Integer[][] keys;
+  private PairingHeap<Integer>[] pairingPartitions;
+  private DHeap<Integer>[] dheapPartitions;
+
+  @Setup(Level.Trial)
+  public void setUpTrial() {
+    Random rnd = new Random(42);
+    keys = new Integer[partitions][partitionSize];
+    for (Integer[] partition : keys)
+      for (int i = 0; i < partitionSize; i++)
+        partition[i] = rnd.nextInt();
+  }
+
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  @Setup(Level.Invocation)
+  public void setUpPartitions() {
+    pairingPartitions = new PairingHeap[partitions];
+    dheapPartitions = new DHeap[partitions];
+    for (int p = 0; p < partitions; p++) {
+      pairingPartitions[p] = new PairingHeap<>();
+      dheapPartitions[p] = new DHeap<>(keys[p], 4);
+      for (Integer x : keys[p])
+        pairingPartitions[p].insert(x);
+    }
+  }
+
+  @Benchmark
+  public int pairingHeapMeld() {
+    PairingHeap<Integer> global = new PairingHeap<>();
+    for (PairingHeap<Integer> partition : pairingPartitions)
+      global.meld(partition);
+    int sum = 0;
+    for (int i = 0; i < taken; i++)
+      sum += global.deleteMin();
+    return sum;
+  }
+
+  @Benchmark
+  public int dheapDrainAndInsert() {
+    DHeap<Integer> global = new DHeap<>(4);
+    for (DHeap<Integer> partition : dheapPartitions)
+      while (!partition.isEmpty())
+        global.insert(partition.deleteMin());
+    int sum = 0;
+    for (int i = 0; i < taken; i++)
+      sum += global.deleteMin();
+    return sum;
+  }
+}
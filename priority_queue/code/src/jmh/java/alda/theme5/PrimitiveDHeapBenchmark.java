@@ -0,0 +1,67 @@
+package alda.theme5;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The branching child scan of LongDHeap against the branch-reduced one, on
+ * the hold workload: replaceMin of the minimum by itself plus a precomputed
+ * random increment, as in event simulation. The new key sinks to a random
+ * depth and the order among siblings stays random, so a branch per child is
+ * mispredicted about as often as it can be.
+ *
+ * mvn -Pjmh package && java -jar target/benchmarks.jar PrimitiveDHeapBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrimitiveDHeapBenchmark {
+
+  @Param({ "2", "4", "8", "16" })
+  int d;
+
+  @Param({ "1000", "1000000" })
+  int size;
+
+  @Param({ "false", "true" })
+  boolean branchReduced;
+
+  private LongDHeap heap;
+  private long[] increments;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    Random rnd = new Random(42);
+    heap = new LongDHeap(d);
+    heap.setBranchReducedChildScan(branchReduced);
+    for (int i = 0; i < size; i++)
+      heap.insert(rnd.nextInt(Integer.MAX_VALUE));
+    increments = new long[INCREMENTS];
+    for (int i = 0; i < increments.length; i++)
+      increments[i] = rnd.nextInt(Integer.MAX_VALUE);
+  }
+
+  @Benchmark
+  public long hold() {
+    return heap.replaceMin(heap.findMin() + increments[next++ & (INCREMENTS - 1)]);
+  }
+
+  private static final int INCREMENTS = 1 << 16;
+}
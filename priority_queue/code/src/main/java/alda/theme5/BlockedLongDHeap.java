@@ -0,0 +1,267 @@
+package alda.theme5;
+
+import java.util.Arrays;
+
+//BlockedLongDHeap class
+//
+//CONSTRUCTION: with optional d (that defaults to 2) and block size in bytes
+//            (that defaults to 4096, a page)
+//
+//******************PUBLIC OPERATIONS*********************
+//void insert( key )          --> Insert key
+//long deleteMin( )           --> Return and remove smallest key
+//long findMin( )             --> Return smallest key
+//long replaceMin( key )      --> Replace smallest key by key, return it
+//boolean isEmpty( )          --> Return true if empty; else false
+//void makeEmpty( )           --> Remove all items
+//******************ERRORS********************************
+//Throws UnderflowException as appropriate
+
+/**
+ * A d-heap of primitive long keys laid out in blocks, as in a B-heap, so
+ * that a path from the root to a leaf touches one block per h levels instead
+ * of one page per level. In LongDHeap the nodes of level k lie around index
+ * d^k, so below the first few levels every step of a percolation lands on
+ * another page and costs a TLB miss once the heap is larger than the caches.
+ *
+ * The root is stored alone at index 0. Every block after it holds d sibling
+ * subtrees of h levels, in level order, with h as large as fits in the block
+ * size. Nodes on the last level of a block are block leaves, and the d
+ * children of the i-th leaf of block b are the roots of block b * L + 1 + i,
+ * where L = d^h is the number of leaves per block. The children of a node are
+ * always d consecutive keys, and both the parent and the first child are
+ * found with a few multiplications and divisions.
+ *
+ * Items fill the array in index order, block after block. The parent of every
+ * index is at a smaller index, so the filled part is always a tree in heap
+ * order, with the last item at the end as usual. The tree is not complete: a
+ * block fills to its last level before its sibling blocks start. Its height
+ * stays within h levels of the height of the tree of blocks, log_L of the
+ * number of blocks.
+ *
+ * The JVM does not align arrays to pages, so a block may straddle one page
+ * boundary.
+ */
+public class BlockedLongDHeap {
+  /**
+   * Construct the BlockedLongDHeap with page-sized blocks.
+   */
+  public BlockedLongDHeap() {
+    this(DEFAULT_CHILDREN);
+  }
+
+  /**
+   * Construct the BlockedLongDHeap with page-sized blocks.
+   *
+   * @param d the amount of children for each node.
+   */
+  public BlockedLongDHeap(int d) {
+    this(d, DEFAULT_BLOCK_BYTES);
+  }
+
+  /**
+   * Construct the BlockedLongDHeap.
+   *
+   * @param d          the amount of children for each node.
+   * @param blockBytes the largest size of a block, such as a page or a cache
+   *                   line. Must hold at least d keys.
+   */
+  public BlockedLongDHeap(int d, int blockBytes) throws IllegalArgumentException {
+    if (d < 2 || blockBytes / Long.BYTES < d)
+      throw new IllegalArgumentException();
+    this.d = d;
+
+    // The most levels of d sibling subtrees that fit in a block
+    int maxNodes = blockBytes / Long.BYTES;
+    int leaves = d;
+    int nodes = d;
+    while ((long) nodes + (long) leaves * d <= maxNodes) {
+      leaves *= d;
+      nodes += leaves;
+    }
+    blockSize = nodes;
+    blockLeaves = leaves;
+    firstLeaf = nodes - leaves;
+    keys = new long[DEFAULT_CAPACITY];
+  }
+
+  /**
+   * Insert into the priority queue, maintaining heap order.
+   * Duplicates are allowed.
+   *
+   * @param key the key to insert.
+   */
+  public void insert(long key) {
+    if (currentSize == keys.length)
+      keys = Arrays.copyOf(keys, keys.length * 2 + 1);
+    percolateUp(currentSize++, key);
+  }
+
+  /**
+   * Find the smallest key in the priority queue.
+   *
+   * @return the smallest key, or throw an UnderflowException if empty.
+   */
+  public long findMin() {
+    if (isEmpty())
+      throw new UnderflowException();
+    return keys[0];
+  }
+
+  /**
+   * Remove the smallest key from the priority queue.
+   *
+   * @return the smallest key, or throw an UnderflowException if empty.
+   */
+  public long deleteMin() {
+    if (isEmpty())
+      throw new UnderflowException();
+
+    long minItem = keys[0];
+    if (--currentSize > 0)
+      percolateDown(0, keys[currentSize]);
+    return minItem;
+  }
+
+  /**
+   * Replace the smallest key by another key, with one percolation instead of
+   * a deleteMin followed by an insert.
+   *
+   * @param key the key to insert.
+   * @return the smallest key before the replacement, or throw an
+   *         UnderflowException if empty.
+   */
+  public long replaceMin(long key) {
+    long minItem = findMin();
+    percolateDown(0, key);
+    return minItem;
+  }
+
+  /**
+   * Test if the priority queue is logically empty.
+   *
+   * @return true if empty, false otherwise.
+   */
+  public boolean isEmpty() {
+    return currentSize == 0;
+  }
+
+  /**
+   * Make the priority queue logically empty.
+   */
+  public void makeEmpty() {
+    currentSize = 0;
+  }
+
+  public int size() {
+    return currentSize;
+  }
+
+  /**
+   * Get the number of keys in a block.
+   *
+   * @return the block size.
+   */
+  public int blockSize() {
+    return blockSize;
+  }
+
+  long get(int index) {
+    return keys[index];
+  }
+
+  /**
+   * Get the parent of an index. The root is at index 0.
+   *
+   * @param index the index of a node other than the root.
+   * @return the index of its parent.
+   */
+  public int parentIndex(int index) throws IllegalArgumentException {
+    if (index <= 0)
+      throw new IllegalArgumentException();
+    int block = (index - 1) / blockSize;
+    int local = (index - 1) % blockSize;
+    if (local >= d)
+      return 1 + block * blockSize + local / d - 1;
+    if (block == 0)
+      return 0;
+    // The block holds the children of a leaf of its parent block
+    int parentBlock = (block - 1) / blockLeaves;
+    return 1 + parentBlock * blockSize + firstLeaf + (block - 1) % blockLeaves;
+  }
+
+  /**
+   * Get the first of the d consecutive children of an index. The index may
+   * be past the end of the array.
+   *
+   * @param index the index of a node.
+   * @return the index of its first child.
+   */
+  public long firstChildIndex(int index) throws IllegalArgumentException {
+    if (index < 0)
+      throw new IllegalArgumentException();
+    if (index == 0)
+      return 1;
+    int block = (index - 1) / blockSize;
+    int local = (index - 1) % blockSize;
+    if (local < firstLeaf)
+      return 1 + (long) block * blockSize + (long) d * (local + 1);
+    long childBlock = (long) block * blockLeaves + 1 + local - firstLeaf;
+    return 1 + childBlock * blockSize;
+  }
+
+  /**
+   * Internal method to percolate up in the heap.
+   *
+   * @param hole the index at which the percolate begins.
+   * @param key  the key to place.
+   */
+  private void percolateUp(int hole, long key) {
+    while (hole > 0) {
+      int parent = parentIndex(hole);
+      if (key >= keys[parent])
+        break;
+      keys[hole] = keys[parent];
+      hole = parent;
+    }
+    keys[hole] = key;
+  }
+
+  /**
+   * Internal method to percolate down in the heap.
+   *
+   * @param hole the index at which the percolate begins.
+   * @param key  the key to place.
+   */
+  private void percolateDown(int hole, long key) {
+    long first;
+    while ((first = firstChildIndex(hole)) < currentSize) {
+      int firstChild = (int) first;
+      int lastChild = Math.min(firstChild + d - 1, currentSize - 1);
+      int prioChild = firstChild;
+      long prioKey = keys[firstChild];
+      for (int child = firstChild + 1; child <= lastChild; child++)
+        if (keys[child] < prioKey) {
+          prioChild = child;
+          prioKey = keys[child];
+        }
+
+      if (prioKey >= key)
+        break;
+      keys[hole] = prioKey;
+      hole = prioChild;
+    }
+    keys[hole] = key;
+  }
+
+  private static final int DEFAULT_CAPACITY = 10;
+  private static final int DEFAULT_CHILDREN = 2;
+  private static final int DEFAULT_BLOCK_BYTES = 4096;
+
+  private int currentSize; // Number of elements in heap
+  private final int d; // Number of children per node
+  private final int blockSize; // Keys per block
+  private final int blockLeaves; // Keys on the last level of a block, d^h
+  private final int firstLeaf; // Index of the first leaf within a block
+  private long[] keys; // The heap array, root at 0
+}
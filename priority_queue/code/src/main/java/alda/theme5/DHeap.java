@@ -1,15 +1,21 @@
 
 package alda.theme5;
 
+import java.util.Collection;
+import java.util.Comparator;
+
 //DHeap class
 //
 //CONSTRUCTION: with optional capacity (that defaults to 100)
 //            or an array containing initial items
+//            and an optional Comparator
 //
 //******************PUBLIC OPERATIONS*********************
 //void insert( x )       --> Insert x
+//void insertAll( items )--> Insert all items
 //Comparable deleteMin( )--> Return and remove smallest item
 //Comparable findMin( )  --> Return smallest item
+//Comparable replaceMin( x ) --> Replace smallest item by x, return it
 //boolean isEmpty( )     --> Return true if empty; else false
 //void makeEmpty( )      --> Remove all items
 //******************ERRORS********************************
@@ -17,11 +23,16 @@ package alda.theme5;
 
 /**
  * Implements a DHeap.
- * Note that all "matching" is based on the compareTo method.
+ * Note that all "matching" is based on the compareTo method, or on the
+ * comparator if the heap was constructed with one. Without a comparator the
+ * items must be Comparable.
+ * 
+ * Percolation moves a hole and writes each item once, at its final slot,
+ * instead of swapping at every level.
  * 
  * @author Wilhelm Durelius
  */
-public class DHeap<AnyType extends Comparable<? super AnyType>> {
+public class DHeap<AnyType> {
   /**
    * Construct the DHeap.
    */
@@ -34,13 +45,33 @@ public class DHeap<AnyType extends Comparable<? super AnyType>> {
    * 
    * @param d the amount of children for each node.
    */
-  @SuppressWarnings("unchecked")
   public DHeap(int d) throws IllegalArgumentException {
+    this(d, null);
+  }
+
+  /**
+   * Construct the DHeap.
+   * 
+   * @param cmp the order of the items.
+   */
+  public DHeap(Comparator<? super AnyType> cmp) {
+    this(DEFAULT_CHILDREN, cmp);
+  }
+
+  /**
+   * Construct the DHeap.
+   * 
+   * @param d   the amount of children for each node.
+   * @param cmp the order of the items, or null for their natural order.
+   */
+  @SuppressWarnings("unchecked")
+  public DHeap(int d, Comparator<? super AnyType> cmp) throws IllegalArgumentException {
     if (d < 2)
       throw new IllegalArgumentException();
     currentSize = 0;
     this.d = d;
-    array = (AnyType[]) new Comparable[DEFAULT_CAPACITY + 1];
+    this.cmp = cmp;
+    array = (AnyType[]) new Object[DEFAULT_CAPACITY + 1];
   }
 
   /**
@@ -56,8 +87,9 @@ public class DHeap<AnyType extends Comparable<? super AnyType>> {
   @SuppressWarnings("unchecked")
   public DHeap(AnyType[] items, int d) {
     this.d = d;
+    this.cmp = null;
     currentSize = items.length;
-    array = (AnyType[]) new Comparable[(currentSize + 2) * 11 / 10];
+    array = (AnyType[]) new Object[(currentSize + 2) * 11 / 10];
 
     int i = 1;
     for (AnyType item : items)
@@ -74,15 +106,66 @@ public class DHeap<AnyType extends Comparable<? super AnyType>> {
   public void insert(AnyType x) {
     if (currentSize == array.length - 1)
       enlargeArray(array.length * 2 + 1);
-    // Percolate up
-    int hole = ++currentSize;
-    array[hole] = x;
-    while (hole > 1 && x.compareTo(array[parentIndex(hole)]) < 0) {
-      var parentIndex = parentIndex(hole);
-      var temp = array[parentIndex];
-      array[parentIndex] = x;
-      array[hole] = temp;
-      hole = parentIndex;
+    percolateUp(++currentSize, x);
+  }
+
+  /**
+   * Insert a collection of items into the priority queue, maintaining heap
+   * order. Duplicates are allowed.
+   * 
+   * @param items the items to insert.
+   */
+  @SuppressWarnings("unchecked")
+  public void insertAll(Collection<? extends AnyType> items) {
+    insertAll((AnyType[]) items.toArray(), 0, items.size());
+  }
+
+  /**
+   * Insert a range of an array of items into the priority queue, maintaining
+   * heap order. Duplicates are allowed.
+   * 
+   * The array grows at most once. A batch that is small compared to the heap
+   * is percolated up item by item, since most inserts stop after a level or
+   * two. A larger batch is appended as is and the heap order is restored
+   * bottom-up, but only for the ancestors of the new items: they form one
+   * range of slots per level, each about d times shorter than the one below,
+   * so the work is linear in the batch size plus the height of the heap.
+   * 
+   * @param items the items.
+   * @param from  the first index to insert, inclusive.
+   * @param to    the last index to insert, exclusive.
+   */
+  public void insertAll(AnyType[] items, int from, int to) {
+    if (from < 0 || to > items.length || from > to)
+      throw new IndexOutOfBoundsException();
+    int k = to - from;
+    if (k == 0)
+      return;
+    if (currentSize + k > array.length - 1)
+      enlargeArray(Math.max(array.length * 2 + 1, currentSize + k + 1));
+
+    if ((long) k * BULK_REBUILD_RATIO < currentSize) {
+      for (int i = from; i < to; i++)
+        percolateUp(++currentSize, items[i]);
+      return;
+    }
+
+    int lo = currentSize + 1;
+    System.arraycopy(items, from, array, lo, k);
+    currentSize += k;
+    if (lo == 1) {
+      buildHeap();
+      return;
+    }
+
+    int hi = currentSize;
+    int restored = currentSize + 1; // Slots from here on are heap ordered
+    while (lo > 1) {
+      lo = (lo - 2) / d + 1;
+      hi = Math.min((hi - 2) / d + 1, restored - 1);
+      for (int i = hi; i >= lo; i--)
+        percolateDown(i, array[i]);
+      restored = lo;
     }
   }
 
@@ -90,11 +173,28 @@ public class DHeap<AnyType extends Comparable<? super AnyType>> {
   @SuppressWarnings("unchecked")
   private void enlargeArray(int newSize) {
     AnyType[] old = array;
-    array = (AnyType[]) new Comparable[newSize];
+    array = (AnyType[]) new Object[newSize];
     for (int i = 0; i < old.length; i++)
       array[i] = old[i];
   }
 
+  /**
+   * Internal method to percolate up in the heap.
+   * 
+   * @param hole the index at which the percolate begins.
+   * @param x    the item to place, which is written once at its final slot.
+   */
+  private void percolateUp(int hole, AnyType x) {
+    while (hole > 1) {
+      int parent = (hole - 2) / d + 1;
+      if (compare(x, array[parent]) >= 0)
+        break;
+      array[hole] = array[parent];
+      hole = parent;
+    }
+    array[hole] = x;
+  }
+
   /**
    * Find the smallest item in the priority queue.
    * 
@@ -116,9 +216,25 @@ public class DHeap<AnyType extends Comparable<? super AnyType>> {
       throw new UnderflowException();
 
     AnyType minItem = findMin();
-    array[1] = array[currentSize--];
-    percolateDown(1);
+    AnyType last = array[currentSize];
+    array[currentSize--] = null;
+    if (currentSize > 0)
+      percolateDown(1, last);
+
+    return minItem;
+  }
 
+  /**
+   * Replace the smallest item by another item, with one percolation instead
+   * of a deleteMin followed by an insert.
+   * 
+   * @param x the item to insert.
+   * @return the smallest item before the replacement, or throw an
+   *         UnderflowException if empty.
+   */
+  public AnyType replaceMin(AnyType x) {
+    AnyType minItem = findMin();
+    percolateDown(1, x);
     return minItem;
   }
 
@@ -127,8 +243,9 @@ public class DHeap<AnyType extends Comparable<? super AnyType>> {
    * arrangement of items. Runs in linear time.
    */
   private void buildHeap() {
-    for (int i = currentSize / d; i > 0; i--)
-      percolateDown(i);
+    // Start at the parent of the last item, the last slot with children
+    for (int i = (currentSize - 2) / d + 1; i > 0; i--)
+      percolateDown(i, array[i]);
   }
 
   /**
@@ -147,40 +264,89 @@ public class DHeap<AnyType extends Comparable<? super AnyType>> {
     currentSize = 0;
   }
 
+  /**
+   * Choose how percolateDown finds the smallest child. The branch-reduced
+   * scan still calls compare for every child, but picks the index by masking
+   * with the sign of the result instead of branching on it, so a random order
+   * among siblings costs no mispredicted branch in the scan itself. The
+   * default scan branches.
+   * In DHeapBenchmark and PrimitiveDHeapBenchmark the branch-reduced scan
+   * has been slower for every d, since each child waits for the select of
+   * the previous one while the branching scan runs ahead speculatively.
+   * 
+   * @param branchReduced true for the branch-reduced scan.
+   */
+  public void setBranchReducedChildScan(boolean branchReduced) {
+    this.branchReduced = branchReduced;
+  }
+
+  /**
+   * Get the comparator of the heap.
+   * 
+   * @return the comparator, or null if the natural order is used.
+   */
+  public Comparator<? super AnyType> comparator() {
+    return cmp;
+  }
+
   private static final int DEFAULT_CAPACITY = 10;
   private static final int DEFAULT_CHILDREN = 2;
+  // insertAll rebuilds bottom-up when the batch is at least 1/8 of the heap
+  private static final int BULK_REBUILD_RATIO = 8;
 
   private int currentSize; // Number of elements in heap
   private int d; // Number of chidlren per node
   private AnyType[] array; // The heap array
+  private final Comparator<? super AnyType> cmp; // null for natural order
+  private boolean branchReduced; // Child scan without a branch per child
+
+  @SuppressWarnings("unchecked")
+  private int compare(AnyType a, AnyType b) {
+    if (cmp != null)
+      return cmp.compare(a, b);
+    return ((Comparable<? super AnyType>) a).compareTo(b);
+  }
 
   /**
    * Internal method to percolate down in the heap.
    * 
    * @param hole the index at which the percolate begins.
+   * @param x    the item to place, which is written once at its final slot.
    */
-  private void percolateDown(int hole) {
-    while (firstChildIndex(hole) <= currentSize) {
-      int firstChild = firstChildIndex(hole);
-      int prioChild = firstChild;
-      for (int i = 1; i < d; i++) {
-        int child = firstChild + i;
-        if (child > currentSize)
-          break;
-        if (array[child].compareTo(array[prioChild]) < 0)
-          prioChild = child;
-      }
+  private void percolateDown(int hole, AnyType x) {
+    int firstChild;
+    while ((firstChild = d * (hole - 1) + 2) <= currentSize) {
+      int lastChild = Math.min(firstChild + d - 1, currentSize);
+      int prioChild = branchReduced ? minChildSelect(firstChild, lastChild) : minChild(firstChild, lastChild);
 
-      if (array[prioChild].compareTo(array[hole]) >= 0)
+      if (compare(array[prioChild], x) >= 0)
         break;
 
-      var temp = array[hole];
       array[hole] = array[prioChild];
-      array[prioChild] = temp;
       hole = prioChild;
-
     }
+    array[hole] = x;
+  }
 
+  private int minChild(int firstChild, int lastChild) {
+    int prioChild = firstChild;
+    AnyType prioItem = array[firstChild];
+    for (int child = firstChild + 1; child <= lastChild; child++)
+      if (compare(array[child], prioItem) < 0) {
+        prioChild = child;
+        prioItem = array[child];
+      }
+    return prioChild;
+  }
+
+  private int minChildSelect(int firstChild, int lastChild) {
+    int prioChild = firstChild;
+    for (int child = firstChild + 1; child <= lastChild; child++) {
+      // All ones if the child is smaller, else zero
+      int less = compare(array[child], array[prioChild]) >> 31;
+      prioChild += (child - prioChild) & less;
+    }
+    return prioChild;
   }
 
   public int size() {
@@ -0,0 +1,466 @@
+package alda.theme5;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+//DelayScheduler class
+//
+//CONSTRUCTION: with optional tick length, wheel size, number of levels
+//            and clock
+//
+//******************PUBLIC OPERATIONS*********************
+//Timeout schedule( x, delay, unit ) --> Make x expire after delay
+//boolean cancel( ) on a Timeout     --> Remove x if not yet taken
+//AnyType poll( )                    --> Return an expired item, or null
+//int drainTo( c, max )              --> Move up to max expired items to c
+//AnyType take( )                    --> Wait for an expired item
+//int size( )                        --> Return number of items not taken
+//******************ERRORS********************************
+//Throws IllegalArgumentException for null items
+
+/**
+ * Items that expire after a delay, for large numbers of timeouts that mostly
+ * expire within seconds or are cancelled before that.
+ *
+ * Near deadlines are kept in a hierarchical timing wheel: levels of 2^bits
+ * slots, where a slot of level i covers 2^(bits*i) ticks. A timeout goes into
+ * the lowest level that reaches its deadline, in a doubly linked slot list,
+ * so schedule and cancel are O(1). As time passes the slots of level 0
+ * expire in tick order, and when a slot of a higher level comes due its
+ * timeouts are moved down to the levels below. Time jumps over the slots
+ * that are empty, so a poll after a long idle period costs at most a scan
+ * around each level per non-empty slot, not a step per tick. Deadlines
+ * beyond the last level go to a DHeap ordered by deadline and enter the
+ * wheel when they come within reach. Cancelling one of those only marks it;
+ * marked timeouts are dropped when they reach the top, or all at once when
+ * they are half the heap.
+ *
+ * Expired items are handed out in deadline order, with ticks as resolution:
+ * an item never expires early, and at most one tick late. All state is
+ * guarded by one ReentrantLock, and take waits on a Condition with a single
+ * leader timing the next expiry, as in DelayQueue, so waiting threads hold
+ * no monitors.
+ */
+public class DelayScheduler<AnyType> {
+
+  /**
+   * Construct the DelayScheduler with 1 ms ticks and three levels of 256
+   * slots, reaching about 4.6 hours, on System.nanoTime.
+   */
+  public DelayScheduler() {
+    this(1, TimeUnit.MILLISECONDS, DEFAULT_WHEEL_BITS, DEFAULT_LEVELS, System::nanoTime);
+  }
+
+  /**
+   * Construct the DelayScheduler.
+   *
+   * @param tick      the length of a tick.
+   * @param unit      the unit of tick.
+   * @param wheelBits the log2 of the number of slots per level.
+   * @param levels    the number of levels.
+   * @param clock     a clock in nanoseconds, such as System::nanoTime. take
+   *                  expects it to run at the speed of real time.
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  public DelayScheduler(long tick, TimeUnit unit, int wheelBits, int levels, LongSupplier clock)
+      throws IllegalArgumentException {
+    if (tick < 1 || wheelBits < 1 || wheelBits > MAX_WHEEL_BITS || levels < 1 || wheelBits * levels > 62)
+      throw new IllegalArgumentException();
+    tickNanos = unit.toNanos(tick);
+    this.wheelBits = wheelBits;
+    this.levels = levels;
+    mask = (1 << wheelBits) - 1;
+    horizon = 1L << (wheelBits * levels);
+    this.clock = clock;
+    origin = clock.getAsLong();
+    slots = new Timeout[levels << wheelBits];
+    for (int i = 0; i < slots.length; i++)
+      slots[i] = new Timeout<>(null, null, 0);
+    ready = new Timeout<>(null, null, 0);
+    overflow = new DHeap<>(HEAP_CHILDREN, (a, b) -> Long.compare(a.deadlineTick, b.deadlineTick));
+  }
+
+  /**
+   * A scheduled item, which can be cancelled until it is taken.
+   */
+  public static final class Timeout<AnyType> {
+    private final DelayScheduler<AnyType> scheduler;
+    private final AnyType item;
+    private final long deadlineTick;
+    private volatile int state;
+    private Timeout<AnyType> prev; // Slot or ready list; the list head if unused
+    private Timeout<AnyType> next;
+
+    private Timeout(DelayScheduler<AnyType> scheduler, AnyType item, long deadlineTick) {
+      this.scheduler = scheduler;
+      this.item = item;
+      this.deadlineTick = deadlineTick;
+      prev = this;
+      next = this;
+    }
+
+    public AnyType item() {
+      return item;
+    }
+
+    /**
+     * Remove the item from its scheduler unless it has been taken.
+     *
+     * @return true if the item was removed.
+     */
+    public boolean cancel() {
+      return scheduler.cancel(this);
+    }
+
+    public boolean isCancelled() {
+      return state == CANCELLED;
+    }
+
+    /**
+     * @return true if the item has expired, whether it has been taken or not.
+     */
+    public boolean isExpired() {
+      return state == READY || state == TAKEN;
+    }
+  }
+
+  /**
+   * Schedule an item.
+   *
+   * @param x     the item.
+   * @param delay the time until the item expires.
+   * @param unit  the unit of delay.
+   * @return the timeout, for cancelling.
+   */
+  public Timeout<AnyType> schedule(AnyType x, long delay, TimeUnit unit) {
+    if (x == null)
+      throw new IllegalArgumentException("Null item");
+    long elapsed = clock.getAsLong() - origin;
+    long delayNanos = unit.toNanos(delay);
+    long deadlineTick;
+    if (delayNanos <= 0)
+      deadlineTick = Math.floorDiv(elapsed, tickNanos);
+    else {
+      long due = elapsed + delayNanos;
+      if (due < 0)
+        due = Long.MAX_VALUE;
+      // Round up so that nothing expires early
+      deadlineTick = due / tickNanos + (due % tickNanos == 0 ? 0 : 1);
+    }
+    Timeout<AnyType> timeout = new Timeout<>(this, x, deadlineTick);
+
+    lock.lock();
+    try {
+      add(timeout);
+      size++;
+      // An earlier deadline than the leader waits for needs a new leader
+      if (timeout.deadlineTick < leaderWakeTick) {
+        leader = null;
+        leaderWakeTick = Long.MAX_VALUE;
+        available.signal();
+      }
+      return timeout;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Remove an expired item.
+   *
+   * @return the item with the earliest deadline of those expired, or null if
+   *         none has expired.
+   */
+  public AnyType poll() {
+    lock.lock();
+    try {
+      advance(nowTick());
+      return ready.next == ready ? null : removeReady();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Move expired items to a collection, taking the lock once.
+   *
+   * @param c        the collection to add the items to.
+   * @param maxItems the largest number of items to move.
+   * @return the number of items moved.
+   */
+  public int drainTo(Collection<? super AnyType> c, int maxItems) {
+    lock.lock();
+    try {
+      advance(nowTick());
+      int n = 0;
+      while (n < maxItems && ready.next != ready) {
+        c.add(removeReady());
+        n++;
+      }
+      return n;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Remove an expired item, waiting for one if needed.
+   *
+   * @return the item with the earliest deadline of those expired.
+   * @throws InterruptedException if interrupted while waiting.
+   */
+  public AnyType take() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      while (true) {
+        advance(nowTick());
+        if (ready.next != ready)
+          return removeReady();
+
+        long wakeTick = nextWakeTick();
+        if (leader != null && wakeTick >= leaderWakeTick)
+          available.await();
+        else {
+          Thread thisThread = Thread.currentThread();
+          leader = thisThread;
+          leaderWakeTick = wakeTick;
+          try {
+            if (wakeTick > Long.MAX_VALUE / tickNanos)
+              available.await();
+            else
+              available.awaitNanos(wakeTick * tickNanos - (clock.getAsLong() - origin));
+          } finally {
+            if (leader == thisThread) {
+              leader = null;
+              leaderWakeTick = Long.MAX_VALUE;
+            }
+          }
+        }
+      }
+    } finally {
+      // Hand the leadership to another waiter
+      if (leader == null && size > 0)
+        available.signal();
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Get the number of items scheduled and not yet taken or cancelled.
+   *
+   * @return the size.
+   */
+  public int size() {
+    lock.lock();
+    try {
+      return size;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private boolean cancel(Timeout<AnyType> timeout) {
+    lock.lock();
+    try {
+      int state = timeout.state;
+      if (state != WHEEL && state != READY && state != OVERFLOW)
+        return false;
+      timeout.state = CANCELLED;
+      size--;
+      if (state == WHEEL) {
+        unlink(timeout);
+        wheelCount--;
+      } else if (state == READY)
+        unlink(timeout);
+      else if (++cancelledInOverflow > overflow.size() / 2)
+        purgeOverflow();
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private long nowTick() {
+    return Math.floorDiv(clock.getAsLong() - origin, tickNanos);
+  }
+
+  /**
+   * Put a timeout in the ready list, the wheel or the overflow heap.
+   */
+  private void add(Timeout<AnyType> timeout) {
+    long delta = timeout.deadlineTick - currentTick;
+    if (delta <= 0) {
+      timeout.state = READY;
+      append(ready, timeout);
+      return;
+    }
+    int level = (63 - Long.numberOfLeadingZeros(delta)) / wheelBits;
+    if (level >= levels) {
+      timeout.state = OVERFLOW;
+      overflow.insert(timeout);
+      return;
+    }
+    int slot = (int) (timeout.deadlineTick >>> (wheelBits * level)) & mask;
+    timeout.state = WHEEL;
+    append(slots[(level << wheelBits) + slot], timeout);
+    wheelCount++;
+  }
+
+  /**
+   * Move time forward, expiring and cascading the slots of every tick that
+   * has something to do and skipping the empty ticks in between.
+   */
+  private void advance(long nowTick) {
+    while (true) {
+      pullOverflow();
+      if (currentTick >= nowTick)
+        return;
+      long tick = nextWakeTick();
+      if (tick > nowTick) {
+        currentTick = nowTick;
+        continue;
+      }
+      currentTick = tick;
+      // Higher levels first, so a cascade can land in a slot due now
+      for (int level = levels - 1; level > 0; level--)
+        if ((tick & ((1L << (wheelBits * level)) - 1)) == 0)
+          cascade(slots[(level << wheelBits) + ((int) (tick >>> (wheelBits * level)) & mask)]);
+      expire(slots[(int) tick & mask]);
+    }
+  }
+
+  /**
+   * Move the overflow timeouts that the wheel now reaches into the wheel.
+   */
+  private void pullOverflow() {
+    while (!overflow.isEmpty()) {
+      Timeout<AnyType> top = overflow.findMin();
+      if (top.state == CANCELLED)
+        cancelledInOverflow--;
+      else if (top.deadlineTick - currentTick >= horizon)
+        return;
+      overflow.deleteMin();
+      if (top.state != CANCELLED)
+        add(top);
+    }
+  }
+
+  private void purgeOverflow() {
+    List<Timeout<AnyType>> live = new ArrayList<>(overflow.size() - cancelledInOverflow);
+    for (int i = 1; i <= overflow.size(); i++)
+      if (overflow.get(i).state != CANCELLED)
+        live.add(overflow.get(i));
+    overflow.makeEmpty();
+    overflow.insertAll(live);
+    cancelledInOverflow = 0;
+  }
+
+  private void cascade(Timeout<AnyType> slot) {
+    Timeout<AnyType> timeout = slot.next;
+    slot.next = slot;
+    slot.prev = slot;
+    while (timeout != slot) {
+      Timeout<AnyType> next = timeout.next;
+      wheelCount--;
+      add(timeout);
+      timeout = next;
+    }
+  }
+
+  private void expire(Timeout<AnyType> slot) {
+    Timeout<AnyType> timeout = slot.next;
+    slot.next = slot;
+    slot.prev = slot;
+    while (timeout != slot) {
+      Timeout<AnyType> next = timeout.next;
+      wheelCount--;
+      timeout.state = READY;
+      append(ready, timeout);
+      timeout = next;
+    }
+  }
+
+  /**
+   * Find the next tick with something to do: a non-empty slot of some level
+   * comes due, or the first overflow timeout comes within reach. Each level
+   * is scanned at most once around, from the slot after the current one.
+   */
+  private long nextWakeTick() {
+    long wake = overflow.isEmpty() ? Long.MAX_VALUE : overflow.findMin().deadlineTick - horizon + 1;
+    if (wheelCount > 0)
+      for (int level = 0; level < levels; level++) {
+        int shift = wheelBits * level;
+        long current = currentTick >>> shift;
+        for (long slot = current + 1; slot <= current + mask + 1; slot++) {
+          long due = slot << shift;
+          if (due >= wake)
+            break;
+          Timeout<AnyType> head = slots[(level << wheelBits) + ((int) slot & mask)];
+          if (head.next != head) {
+            wake = due;
+            break;
+          }
+        }
+      }
+    return wake;
+  }
+
+  private AnyType removeReady() {
+    Timeout<AnyType> timeout = ready.next;
+    unlink(timeout);
+    timeout.state = TAKEN;
+    size--;
+    return timeout.item;
+  }
+
+  private static <AnyType> void append(Timeout<AnyType> list, Timeout<AnyType> timeout) {
+    timeout.prev = list.prev;
+    timeout.next = list;
+    list.prev.next = timeout;
+    list.prev = timeout;
+  }
+
+  private static <AnyType> void unlink(Timeout<AnyType> timeout) {
+    timeout.prev.next = timeout.next;
+    timeout.next.prev = timeout.prev;
+    timeout.prev = timeout;
+    timeout.next = timeout;
+  }
+
+  private static final int DEFAULT_WHEEL_BITS = 8;
+  private static final int DEFAULT_LEVELS = 3;
+  private static final int MAX_WHEEL_BITS = 16;
+  private static final int HEAP_CHILDREN = 4;
+
+  private static final int WHEEL = 1;
+  private static final int OVERFLOW = 2;
+  private static final int READY = 3;
+  private static final int TAKEN = 4;
+  private static final int CANCELLED = 5;
+
+  private final long tickNanos;
+  private final int wheelBits;
+  private final int levels;
+  private final int mask; // Slot of a tick within a level
+  private final long horizon; // Ticks reached by the wheel
+  private final LongSupplier clock;
+  private final long origin; // Clock time of tick 0
+
+  private final Timeout<AnyType>[] slots; // List heads, level by level
+  private final Timeout<AnyType> ready; // Head of the expired items
+  private final DHeap<Timeout<AnyType>> overflow; // Deadlines beyond the wheel
+  private long currentTick; // Every slot up to here has expired
+  private int wheelCount; // Timeouts in the wheel
+  private int cancelledInOverflow; // Marked timeouts in overflow
+  private int size;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition available = lock.newCondition();
+  private Thread leader; // Thread timing the next expiry, if any
+  private long leaderWakeTick = Long.MAX_VALUE;
+}
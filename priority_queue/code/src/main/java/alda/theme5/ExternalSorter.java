@@ -0,0 +1,335 @@
+package alda.theme5;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+//ExternalSorter class
+//
+//CONSTRUCTION: with the number of records to hold in memory, merge fan-in,
+//            I/O buffer size and directory for temporary runs
+//
+//******************PUBLIC OPERATIONS*********************
+//Result sort( input, output ) --> Sort a file of longs
+//******************ERRORS********************************
+//Throws IOException for I/O errors
+
+/**
+ * Sorts files of 8-byte big-endian longs, as written by DataOutputStream,
+ * that are larger than memory.
+ *
+ * The first phase makes sorted runs with replacement selection: a LongDHeap
+ * of the memory size hands out its minimum and takes the next input record in
+ * its place, and records smaller than the last one written are set aside for
+ * the next run. On random input the runs get about twice the memory size.
+ *
+ * The second phase merges up to fanIn runs at a time through a DHeap of run
+ * cursors ordered by their current record. A cursor reads its run through a
+ * memory-mapped window that slides along the file. Passes repeat until one
+ * run remains, the output file.
+ */
+public class ExternalSorter {
+
+  /**
+   * Construct the ExternalSorter.
+   *
+   * @param memoryRecords the number of records to sort in memory.
+   * @param fanIn         the number of runs merged at a time.
+   * @param bufferSize    the size in bytes of each read, write and mapped
+   *                      window.
+   * @param tempDirectory the directory for the runs.
+   */
+  public ExternalSorter(int memoryRecords, int fanIn, int bufferSize, Path tempDirectory)
+      throws IllegalArgumentException {
+    if (memoryRecords < 1 || fanIn < 2 || bufferSize < RECORD_SIZE)
+      throw new IllegalArgumentException();
+    this.memoryRecords = memoryRecords;
+    this.fanIn = fanIn;
+    // Whole records only, so no record is split between two buffers
+    this.bufferSize = bufferSize / RECORD_SIZE * RECORD_SIZE;
+    this.tempDirectory = tempDirectory;
+  }
+
+  /**
+   * Counters and timings of one sort.
+   */
+  public static class Result {
+    private long records;
+    private int runs;
+    private int mergePasses;
+    private long runNanos;
+    private long mergeNanos;
+
+    public long records() {
+      return records;
+    }
+
+    /**
+     * @return the number of runs made by replacement selection.
+     */
+    public int runs() {
+      return runs;
+    }
+
+    public int mergePasses() {
+      return mergePasses;
+    }
+
+    /**
+     * @return the input size divided by the total time, in MB/s.
+     */
+    public double megabytesPerSecond() {
+      return megabytesPerSecond(runNanos + mergeNanos);
+    }
+
+    public double runPhaseMegabytesPerSecond() {
+      return megabytesPerSecond(runNanos);
+    }
+
+    public double mergePhaseMegabytesPerSecond() {
+      return megabytesPerSecond(mergeNanos);
+    }
+
+    private double megabytesPerSecond(long nanos) {
+      return nanos == 0 ? 0 : records * RECORD_SIZE / 1e6 / (nanos / 1e9);
+    }
+
+    @Override
+    public String toString() {
+      return String.format(Locale.ROOT,
+          "records: %d runs: %d passes: %d total: %.1f MB/s runs: %.1f MB/s merge: %.1f MB/s", records, runs,
+          mergePasses, megabytesPerSecond(), runPhaseMegabytesPerSecond(), mergePhaseMegabytesPerSecond());
+    }
+  }
+
+  /**
+   * Sort a file.
+   *
+   * @param input  the file to sort.
+   * @param output the sorted file, replaced if it exists.
+   * @return the counters and timings.
+   * @throws IOException if a file cannot be read or written.
+   */
+  public Result sort(Path input, Path output) throws IOException {
+    if (Files.size(input) % RECORD_SIZE != 0)
+      throw new IOException("File size is not a multiple of " + RECORD_SIZE + ": " + input);
+    Result result = new Result();
+    List<Path> runs = new ArrayList<>();
+    try {
+      long start = System.nanoTime();
+      makeRuns(input, runs, result);
+      result.runs = runs.size();
+      long runsDone = System.nanoTime();
+      result.runNanos = runsDone - start;
+
+      if (runs.isEmpty())
+        Files.write(output, new byte[0]);
+      while (!runs.isEmpty()) {
+        result.mergePasses++;
+        boolean last = runs.size() <= fanIn;
+        List<Path> merged = new ArrayList<>();
+        for (int from = 0; from < runs.size(); from += fanIn) {
+          List<Path> group = runs.subList(from, Math.min(from + fanIn, runs.size()));
+          Path target = last ? output : Files.createTempFile(tempDirectory, "run", ".bin");
+          merge(group, target);
+          for (Path run : group)
+            Files.delete(run);
+          if (!last)
+            merged.add(target);
+        }
+        runs = merged;
+      }
+      result.mergeNanos = System.nanoTime() - runsDone;
+      return result;
+    } finally {
+      for (Path run : runs)
+        Files.deleteIfExists(run);
+    }
+  }
+
+  /**
+   * Replacement selection. The heap and the records set aside for the next
+   * run never hold more than memoryRecords together, since a record is only
+   * set aside in place of one that left the heap.
+   */
+  private void makeRuns(Path input, List<Path> runs, Result result) throws IOException {
+    try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ)) {
+      ByteBuffer inBuffer = ByteBuffer.allocate(bufferSize);
+      inBuffer.flip();
+
+      LongDHeap heap = new LongDHeap(HEAP_CHILDREN);
+      while (heap.size() < memoryRecords && fill(in, inBuffer)) {
+        heap.insert(inBuffer.getLong());
+        result.records++;
+      }
+
+      long[] nextRun = new long[Math.min(memoryRecords, 1024)];
+      while (!heap.isEmpty()) {
+        Path run = Files.createTempFile(tempDirectory, "run", ".bin");
+        runs.add(run);
+        int pending = 0;
+        try (RecordWriter out = new RecordWriter(run, bufferSize)) {
+          while (!heap.isEmpty()) {
+            long min = heap.findMin();
+            out.write(min);
+            if (!fill(in, inBuffer)) {
+              heap.deleteMin();
+              continue;
+            }
+            long next = inBuffer.getLong();
+            result.records++;
+            if (next >= min)
+              heap.replaceMin(next);
+            else {
+              heap.deleteMin();
+              if (pending == nextRun.length)
+                nextRun = Arrays.copyOf(nextRun, Math.min(memoryRecords, pending * 2));
+              nextRun[pending++] = next;
+            }
+          }
+        }
+        if (pending > 0)
+          heap = new LongDHeap(Arrays.copyOf(nextRun, pending), HEAP_CHILDREN);
+      }
+    }
+  }
+
+  /**
+   * Make sure the buffer has a record, reading more if needed.
+   *
+   * @return false at the end of the file.
+   */
+  private static boolean fill(FileChannel in, ByteBuffer buffer) throws IOException {
+    if (buffer.remaining() >= RECORD_SIZE)
+      return true;
+    // A short read may have left part of a record behind
+    buffer.compact();
+    while (buffer.position() < RECORD_SIZE)
+      if (in.read(buffer) < 0)
+        break;
+    buffer.flip();
+    return buffer.remaining() >= RECORD_SIZE;
+  }
+
+  private void merge(List<Path> group, Path target) throws IOException {
+    DHeap<RunCursor> heap = new DHeap<>(HEAP_CHILDREN);
+    List<RunCursor> cursors = new ArrayList<>(group.size());
+    try (RecordWriter out = new RecordWriter(target, bufferSize)) {
+      for (Path run : group) {
+        RunCursor cursor = new RunCursor(run, bufferSize);
+        cursors.add(cursor);
+        if (cursor.advance())
+          heap.insert(cursor);
+      }
+      while (!heap.isEmpty()) {
+        RunCursor cursor = heap.findMin();
+        out.write(cursor.current);
+        // The cursor takes its own place with its next record
+        if (cursor.advance())
+          heap.replaceMin(cursor);
+        else
+          heap.deleteMin();
+      }
+    } finally {
+      for (RunCursor cursor : cursors)
+        cursor.close();
+    }
+  }
+
+  /**
+   * Reads a run through a memory-mapped window.
+   */
+  private static class RunCursor implements Comparable<RunCursor> {
+    private final FileChannel channel;
+    private final long size;
+    private final int windowSize;
+    private long windowStart;
+    private MappedByteBuffer window;
+    long current;
+
+    RunCursor(Path run, int windowSize) throws IOException {
+      channel = FileChannel.open(run, StandardOpenOption.READ);
+      size = channel.size();
+      this.windowSize = windowSize;
+    }
+
+    /**
+     * Move to the next record.
+     *
+     * @return false at the end of the run.
+     */
+    boolean advance() throws IOException {
+      if (window == null || !window.hasRemaining()) {
+        long start = window == null ? 0 : windowStart + window.capacity();
+        if (start >= size)
+          return false;
+        windowStart = start;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(windowSize, size - start));
+      }
+      current = window.getLong();
+      return true;
+    }
+
+    @Override
+    public int compareTo(RunCursor other) {
+      return Long.compare(current, other.current);
+    }
+
+    void close() throws IOException {
+      window = null;
+      channel.close();
+    }
+  }
+
+  /**
+   * Writes records through one buffer.
+   */
+  private static class RecordWriter implements AutoCloseable {
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+
+    RecordWriter(Path file, int bufferSize) throws IOException {
+      channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+          StandardOpenOption.TRUNCATE_EXISTING);
+      buffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    void write(long record) throws IOException {
+      if (!buffer.hasRemaining())
+        flush();
+      buffer.putLong(record);
+    }
+
+    private void flush() throws IOException {
+      buffer.flip();
+      while (buffer.hasRemaining())
+        channel.write(buffer);
+      buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        flush();
+      } finally {
+        channel.close();
+      }
+    }
+  }
+
+  private static final int RECORD_SIZE = Long.BYTES;
+  private static final int HEAP_CHILDREN = 4;
+
+  private final int memoryRecords;
+  private final int fanIn;
+  private final int bufferSize; // A multiple of RECORD_SIZE
+  private final Path tempDirectory;
+}
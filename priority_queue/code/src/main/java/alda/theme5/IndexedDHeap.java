@@ -0,0 +1,334 @@
+package alda.theme5;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+//IndexedDHeap class
+//
+//CONSTRUCTION: with optional d (that defaults to 2) and Comparator
+//
+//******************PUBLIC OPERATIONS*********************
+//int insert( x )                --> Insert x, return its handle
+//Comparable deleteMin( )        --> Return and remove smallest item
+//Comparable findMin( )          --> Return smallest item
+//int findMinHandle( )           --> Return handle of smallest item
+//void decreaseKey( handle, x )  --> Replace item by a smaller one
+//void increaseKey( handle, x )  --> Replace item by a larger one
+//Comparable remove( handle )    --> Remove item with handle
+//boolean contains( handle )     --> Return true if handle is in heap
+//boolean isEmpty( )             --> Return true if empty; else false
+//void makeEmpty( )              --> Remove all items
+//******************ERRORS********************************
+//Throws UnderflowException as appropriate
+//Throws IllegalArgumentException for handles not in heap
+
+/**
+ * A d-heap where every item gets an int handle when it is inserted, so it
+ * can be reprioritized or removed later without searching. The heap array
+ * holds handles, items are stored by handle, and a position map from handle
+ * to heap slot is updated as percolation moves the handles, so only ints
+ * move and nothing is allocated after the arrays have grown.
+ *
+ * A handle stays valid until its item is removed by deleteMin or remove, and
+ * is reused by later inserts after that. Items are ordered by the comparator
+ * if the heap was constructed with one; without a comparator the items must
+ * be Comparable.
+ */
+public class IndexedDHeap<AnyType> {
+  /**
+   * Construct the IndexedDHeap.
+   */
+  public IndexedDHeap() {
+    this(DEFAULT_CHILDREN);
+  }
+
+  /**
+   * Construct the IndexedDHeap.
+   *
+   * @param d the amount of children for each node.
+   */
+  public IndexedDHeap(int d) throws IllegalArgumentException {
+    this(d, null);
+  }
+
+  /**
+   * Construct the IndexedDHeap.
+   *
+   * @param d   the amount of children for each node.
+   * @param cmp the order of the items, or null for their natural order.
+   */
+  @SuppressWarnings("unchecked")
+  public IndexedDHeap(int d, Comparator<? super AnyType> cmp) throws IllegalArgumentException {
+    if (d < 2)
+      throw new IllegalArgumentException();
+    this.d = d;
+    this.cmp = cmp;
+    heap = new int[DEFAULT_CAPACITY + 1];
+    position = new int[DEFAULT_CAPACITY];
+    items = (AnyType[]) new Object[DEFAULT_CAPACITY];
+  }
+
+  /**
+   * Insert into the priority queue, maintaining heap order.
+   * Duplicates are allowed.
+   *
+   * @param x the item to insert.
+   * @return the handle of the item.
+   */
+  public int insert(AnyType x) {
+    if (currentSize == items.length)
+      enlargeArrays(items.length * 2 + 1);
+    int handle = nextHandle();
+    items[handle] = x;
+    percolateUp(++currentSize, handle);
+    return handle;
+  }
+
+  /**
+   * Find the smallest item in the priority queue.
+   *
+   * @return the smallest item, or throw an UnderflowException if empty.
+   */
+  public AnyType findMin() {
+    if (isEmpty())
+      throw new UnderflowException();
+    return items[heap[1]];
+  }
+
+  /**
+   * Find the handle of the smallest item in the priority queue.
+   *
+   * @return the handle, or throw an UnderflowException if empty.
+   */
+  public int findMinHandle() {
+    if (isEmpty())
+      throw new UnderflowException();
+    return heap[1];
+  }
+
+  /**
+   * Remove the smallest item from the priority queue.
+   *
+   * @return the smallest item, or throw an UnderflowException if empty.
+   */
+  public AnyType deleteMin() {
+    if (isEmpty())
+      throw new UnderflowException();
+    return removeAt(1);
+  }
+
+  /**
+   * Test if a handle belongs to an item in the priority queue.
+   *
+   * @param handle the handle.
+   * @return true if the item is present.
+   */
+  public boolean contains(int handle) {
+    return handle >= 0 && handle < position.length && position[handle] != 0;
+  }
+
+  /**
+   * Get the item with a handle.
+   *
+   * @param handle the handle.
+   * @return the item.
+   */
+  public AnyType get(int handle) {
+    checkHandle(handle);
+    return items[handle];
+  }
+
+  /**
+   * Replace an item by one that is not larger, moving it up.
+   *
+   * @param handle the handle of the item.
+   * @param x      the new item.
+   * @throws IllegalArgumentException if x is larger than the current item.
+   */
+  public void decreaseKey(int handle, AnyType x) {
+    checkHandle(handle);
+    if (compare(x, items[handle]) > 0)
+      throw new IllegalArgumentException("New item is larger");
+    items[handle] = x;
+    percolateUp(position[handle], handle);
+  }
+
+  /**
+   * Replace an item by one that is not smaller, moving it down.
+   *
+   * @param handle the handle of the item.
+   * @param x      the new item.
+   * @throws IllegalArgumentException if x is smaller than the current item.
+   */
+  public void increaseKey(int handle, AnyType x) {
+    checkHandle(handle);
+    if (compare(x, items[handle]) < 0)
+      throw new IllegalArgumentException("New item is smaller");
+    items[handle] = x;
+    percolateDown(position[handle], handle);
+  }
+
+  /**
+   * Remove an item from the priority queue.
+   *
+   * @param handle the handle of the item.
+   * @return the removed item.
+   */
+  public AnyType remove(int handle) {
+    checkHandle(handle);
+    return removeAt(position[handle]);
+  }
+
+  /**
+   * Test if the priority queue is logically empty.
+   *
+   * @return true if empty, false otherwise.
+   */
+  public boolean isEmpty() {
+    return currentSize == 0;
+  }
+
+  /**
+   * Make the priority queue logically empty. All handles become invalid.
+   */
+  public void makeEmpty() {
+    Arrays.fill(position, 0);
+    Arrays.fill(items, null);
+    currentSize = 0;
+    freeHandles = 0;
+    usedHandles = 0;
+  }
+
+  public int size() {
+    return currentSize;
+  }
+
+  int handleAt(int index) {
+    return heap[index];
+  }
+
+  public int parentIndex(int index) throws IllegalArgumentException {
+    if (index <= 1)
+      throw new IllegalArgumentException();
+    return (index - 2) / d + 1;
+  }
+
+  public int firstChildIndex(int index) throws IllegalArgumentException {
+    if (index <= 0)
+      throw new IllegalArgumentException();
+    return d * (index - 1) + 2;
+  }
+
+  private void checkHandle(int handle) {
+    if (!contains(handle))
+      throw new IllegalArgumentException("No item with handle " + handle);
+  }
+
+  /**
+   * Take a handle from the free list, or a never used one. The free list is
+   * a stack kept at the end of the heap array, growing downwards. Every handle
+   * is either in the heap or on the stack, so the two never meet, and the
+   * stack is empty whenever the arrays have to grow.
+   */
+  private int nextHandle() {
+    if (freeHandles > 0)
+      return heap[heap.length - freeHandles--];
+    return usedHandles++;
+  }
+
+  /**
+   * Remove the item at a heap slot and fill the slot with the last item.
+   */
+  private AnyType removeAt(int index) {
+    int handle = heap[index];
+    AnyType item = items[handle];
+    int last = heap[currentSize--];
+    if (index <= currentSize) {
+      // The last item may belong above or below the hole
+      if (index > 1 && compare(items[last], items[heap[(index - 2) / d + 1]]) < 0)
+        percolateUp(index, last);
+      else
+        percolateDown(index, last);
+    }
+    items[handle] = null;
+    position[handle] = 0;
+    heap[heap.length - ++freeHandles] = handle;
+    return item;
+  }
+
+  private void enlargeArrays(int newSize) {
+    heap = Arrays.copyOf(heap, newSize + 1);
+    position = Arrays.copyOf(position, newSize);
+    items = Arrays.copyOf(items, newSize);
+  }
+
+  /**
+   * Internal method to percolate up in the heap.
+   *
+   * @param hole   the index at which the percolate begins.
+   * @param handle the handle to place.
+   */
+  private void percolateUp(int hole, int handle) {
+    AnyType x = items[handle];
+    while (hole > 1) {
+      int parent = (hole - 2) / d + 1;
+      int parentHandle = heap[parent];
+      if (compare(x, items[parentHandle]) >= 0)
+        break;
+      heap[hole] = parentHandle;
+      position[parentHandle] = hole;
+      hole = parent;
+    }
+    heap[hole] = handle;
+    position[handle] = hole;
+  }
+
+  /**
+   * Internal method to percolate down in the heap.
+   *
+   * @param hole   the index at which the percolate begins.
+   * @param handle the handle to place.
+   */
+  private void percolateDown(int hole, int handle) {
+    AnyType x = items[handle];
+    int firstChild;
+    while ((firstChild = d * (hole - 1) + 2) <= currentSize) {
+      int lastChild = Math.min(firstChild + d - 1, currentSize);
+      int prioChild = firstChild;
+      AnyType prioItem = items[heap[firstChild]];
+      for (int child = firstChild + 1; child <= lastChild; child++)
+        if (compare(items[heap[child]], prioItem) < 0) {
+          prioChild = child;
+          prioItem = items[heap[child]];
+        }
+
+      if (compare(prioItem, x) >= 0)
+        break;
+      int childHandle = heap[prioChild];
+      heap[hole] = childHandle;
+      position[childHandle] = hole;
+      hole = prioChild;
+    }
+    heap[hole] = handle;
+    position[handle] = hole;
+  }
+
+  @SuppressWarnings("unchecked")
+  private int compare(AnyType a, AnyType b) {
+    if (cmp != null)
+      return cmp.compare(a, b);
+    return ((Comparable<? super AnyType>) a).compareTo(b);
+  }
+
+  private static final int DEFAULT_CAPACITY = 10;
+  private static final int DEFAULT_CHILDREN = 2;
+
+  private int currentSize; // Number of elements in heap
+  private final int d; // Number of children per node
+  private final Comparator<? super AnyType> cmp; // null for natural order
+  private int[] heap; // Handles in heap order, free handles at the end
+  private int[] position; // Heap slot of each handle, 0 if not in heap
+  private AnyType[] items; // Item of each handle
+  private int freeHandles; // Number of free handles at the end of heap
+  private int usedHandles; // Handles below this have been handed out
+}
@@ -0,0 +1,289 @@
+package alda.theme5;
+
+import java.util.Arrays;
+
+//IntDHeap class
+//
+//CONSTRUCTION: with optional d (that defaults to 2) and payload flag,
+//            or an array containing initial keys
+//
+//******************PUBLIC OPERATIONS*********************
+//void insert( key )          --> Insert key
+//void insert( key, payload ) --> Insert key with an int payload
+//int deleteMin( )            --> Return and remove smallest key
+//int findMin( )              --> Return smallest key
+//int findMinPayload( )       --> Return payload of smallest key
+//boolean isEmpty( )          --> Return true if empty; else false
+//void makeEmpty( )           --> Remove all items
+//******************ERRORS********************************
+//Throws UnderflowException as appropriate
+
+/**
+ * A d-heap of primitive int keys, laid out like DHeap but without boxing:
+ * the keys are kept in an int[] and compared with <, and an optional int
+ * payload is moved along in a parallel int[]. An object payload can be kept
+ * in an array of the caller's indexed by the int payload, which keeps the
+ * heap itself free of references for the garbage collector to trace.
+ *
+ * Percolation moves a hole instead of swapping, so every level costs one
+ * write per array instead of three.
+ */
+public class IntDHeap {
+  /**
+   * Construct the IntDHeap.
+   */
+  public IntDHeap() {
+    this(DEFAULT_CHILDREN);
+  }
+
+  /**
+   * Construct the IntDHeap.
+   *
+   * @param d the amount of children for each node.
+   */
+  public IntDHeap(int d) {
+    this(d, false);
+  }
+
+  /**
+   * Construct the IntDHeap.
+   *
+   * @param d           the amount of children for each node.
+   * @param withPayload true to keep an int payload with each key.
+   */
+  public IntDHeap(int d, boolean withPayload) throws IllegalArgumentException {
+    if (d < 2)
+      throw new IllegalArgumentException();
+    this.d = d;
+    keys = new int[DEFAULT_CAPACITY + 1];
+    payloads = withPayload ? new int[DEFAULT_CAPACITY + 1] : null;
+  }
+
+  /**
+   * Construct the IntDHeap given an array of keys and custom children size.
+   */
+  public IntDHeap(int[] items, int d) throws IllegalArgumentException {
+    if (d < 2)
+      throw new IllegalArgumentException();
+    this.d = d;
+    currentSize = items.length;
+    keys = new int[(currentSize + 2) * 11 / 10];
+    System.arraycopy(items, 0, keys, 1, currentSize);
+    payloads = null;
+    buildHeap();
+  }
+
+  /**
+   * Insert into the priority queue, maintaining heap order.
+   * Duplicates are allowed.
+   *
+   * @param key the key to insert.
+   */
+  public void insert(int key) {
+    insert(key, 0);
+  }
+
+  /**
+   * Insert into the priority queue, maintaining heap order.
+   * Duplicates are allowed.
+   *
+   * @param key     the key to insert.
+   * @param payload the payload, ignored if the heap has none.
+   */
+  public void insert(int key, int payload) {
+    if (currentSize == keys.length - 1)
+      enlargeArray(keys.length * 2 + 1);
+    percolateUp(++currentSize, key, payload);
+  }
+
+  /**
+   * Find the smallest key in the priority queue.
+   *
+   * @return the smallest key, or throw an UnderflowException if empty.
+   */
+  public int findMin() {
+    if (isEmpty())
+      throw new UnderflowException();
+    return keys[1];
+  }
+
+  /**
+   * Find the payload of the smallest key in the priority queue.
+   *
+   * @return the payload, or throw an UnderflowException if empty.
+   */
+  public int findMinPayload() {
+    if (isEmpty())
+      throw new UnderflowException();
+    if (payloads == null)
+      throw new IllegalStateException("Heap has no payload");
+    return payloads[1];
+  }
+
+  /**
+   * Remove the smallest key from the priority queue.
+   *
+   * @return the smallest key, or throw an UnderflowException if empty.
+   */
+  public int deleteMin() {
+    if (isEmpty())
+      throw new UnderflowException();
+
+    int minItem = keys[1];
+    int last = currentSize--;
+    if (currentSize > 0)
+      percolateDown(1, keys[last], payloads == null ? 0 : payloads[last]);
+    return minItem;
+  }
+
+  /**
+   * Test if the priority queue is logically empty.
+   *
+   * @return true if empty, false otherwise.
+   */
+  public boolean isEmpty() {
+    return currentSize == 0;
+  }
+
+  /**
+   * Make the priority queue logically empty.
+   */
+  public void makeEmpty() {
+    currentSize = 0;
+  }
+
+  public int size() {
+    return currentSize;
+  }
+
+  /**
+   * Choose how percolateDown finds the smallest child. The branch-reduced
+   * scan picks the child and its key by masking with the sign of the key
+   * difference instead of branching on a comparison, so a random order among
+   * siblings costs no mispredicted branches. The default scan branches.
+   * In DHeapBenchmark and PrimitiveDHeapBenchmark the branch-reduced scan
+   * has been slower for every d, since each child waits for the select of
+   * the previous one while the branching scan runs ahead speculatively.
+   *
+   * @param branchReduced true for the branch-reduced scan.
+   */
+  public void setBranchReducedChildScan(boolean branchReduced) {
+    this.branchReduced = branchReduced;
+  }
+
+  public boolean hasPayload() {
+    return payloads != null;
+  }
+
+  int get(int index) {
+    return keys[index];
+  }
+
+  public int parentIndex(int index) throws IllegalArgumentException {
+    if (index <= 1)
+      throw new IllegalArgumentException();
+    return (index - 2) / d + 1;
+  }
+
+  public int firstChildIndex(int index) throws IllegalArgumentException {
+    if (index <= 0)
+      throw new IllegalArgumentException();
+    return d * (index - 1) + 2;
+  }
+
+  /**
+   * Establish heap order property from an arbitrary
+   * arrangement of items. Runs in linear time.
+   */
+  private void buildHeap() {
+    // Start at the parent of the last item, the last slot with children
+    for (int i = (currentSize - 2) / d + 1; i > 0; i--)
+      percolateDown(i, keys[i], payloads == null ? 0 : payloads[i]);
+  }
+
+  private void enlargeArray(int newSize) {
+    keys = Arrays.copyOf(keys, newSize);
+    if (payloads != null)
+      payloads = Arrays.copyOf(payloads, newSize);
+  }
+
+  /**
+   * Internal method to percolate up in the heap.
+   *
+   * @param hole    the index at which the percolate begins.
+   * @param key     the key to place.
+   * @param payload the payload to place with it.
+   */
+  private void percolateUp(int hole, int key, int payload) {
+    while (hole > 1) {
+      int parent = (hole - 2) / d + 1;
+      if (key >= keys[parent])
+        break;
+      keys[hole] = keys[parent];
+      if (payloads != null)
+        payloads[hole] = payloads[parent];
+      hole = parent;
+    }
+    keys[hole] = key;
+    if (payloads != null)
+      payloads[hole] = payload;
+  }
+
+  /**
+   * Internal method to percolate down in the heap.
+   *
+   * @param hole    the index at which the percolate begins.
+   * @param key     the key to place.
+   * @param payload the payload to place with it.
+   */
+  private void percolateDown(int hole, int key, int payload) {
+    int firstChild;
+    while ((firstChild = d * (hole - 1) + 2) <= currentSize) {
+      int lastChild = Math.min(firstChild + d - 1, currentSize);
+      int prioChild = branchReduced ? minChildSelect(firstChild, lastChild) : minChild(firstChild, lastChild);
+      int prioKey = keys[prioChild];
+      if (prioKey >= key)
+        break;
+      keys[hole] = prioKey;
+      if (payloads != null)
+        payloads[hole] = payloads[prioChild];
+      hole = prioChild;
+    }
+    keys[hole] = key;
+    if (payloads != null)
+      payloads[hole] = payload;
+  }
+
+  private int minChild(int firstChild, int lastChild) {
+    int prioChild = firstChild;
+    int prioKey = keys[firstChild];
+    for (int child = firstChild + 1; child <= lastChild; child++)
+      if (keys[child] < prioKey) {
+        prioChild = child;
+        prioKey = keys[child];
+      }
+    return prioChild;
+  }
+
+  private int minChildSelect(int firstChild, int lastChild) {
+    int prioChild = firstChild;
+    int prioKey = keys[firstChild];
+    for (int child = firstChild + 1; child <= lastChild; child++) {
+      int childKey = keys[child];
+      // All ones if the child is smaller, else zero; the difference fits a long
+      int less = (int) (((long) childKey - prioKey) >> 63);
+      prioChild += (child - prioChild) & less;
+      prioKey += (childKey - prioKey) & less;
+    }
+    return prioChild;
+  }
+
+  private static final int DEFAULT_CAPACITY = 10;
+  private static final int DEFAULT_CHILDREN = 2;
+
+  private int currentSize; // Number of elements in heap
+  private final int d; // Number of children per node
+  private int[] keys; // The heap array
+  private int[] payloads; // Payload of keys[i] in payloads[i], or null
+  private boolean branchReduced; // Child scan without a branch per child
+}
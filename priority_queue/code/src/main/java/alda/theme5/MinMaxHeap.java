@@ -0,0 +1,350 @@
+package alda.theme5;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+//MinMaxHeap class
+//
+//CONSTRUCTION: with optional Comparator,
+//            or an array containing initial items
+//
+//******************PUBLIC OPERATIONS*********************
+//void insert( x )       --> Insert x
+//Comparable deleteMin( )--> Return and remove smallest item
+//Comparable deleteMax( )--> Return and remove largest item
+//Comparable findMin( )  --> Return smallest item
+//Comparable findMax( )  --> Return largest item
+//boolean isEmpty( )     --> Return true if empty; else false
+//void makeEmpty( )      --> Remove all items
+//******************ERRORS********************************
+//Throws UnderflowException as appropriate
+
+/**
+ * A double-ended priority queue in one array: a min-max heap. The binary
+ * tree is laid out like a 2-heap, but even levels, starting with the root,
+ * are min levels and odd levels are max levels. A node on a min level is not
+ * larger than anything below it, and a node on a max level is not smaller.
+ * The smallest item is the root and the largest is one of its two children.
+ *
+ * insert percolates up along every other level, and deleteMin and deleteMax
+ * percolate down through the grandchildren, so all are O(log n). Building
+ * from an array works bottom-up like buildHeap in DHeap, in linear time.
+ */
+public class MinMaxHeap<AnyType> {
+  /**
+   * Construct the MinMaxHeap.
+   */
+  public MinMaxHeap() {
+    this((Comparator<? super AnyType>) null);
+  }
+
+  /**
+   * Construct the MinMaxHeap.
+   *
+   * @param cmp the order of the items, or null for their natural order.
+   */
+  @SuppressWarnings("unchecked")
+  public MinMaxHeap(Comparator<? super AnyType> cmp) {
+    this.cmp = cmp;
+    array = (AnyType[]) new Object[DEFAULT_CAPACITY + 1];
+  }
+
+  /**
+   * Construct the MinMaxHeap given an array of items, in linear time.
+   *
+   * @param items the initial items.
+   */
+  public MinMaxHeap(AnyType[] items) {
+    this(items, null);
+  }
+
+  /**
+   * Construct the MinMaxHeap given an array of items, in linear time.
+   *
+   * @param items the initial items.
+   * @param cmp   the order of the items, or null for their natural order.
+   */
+  @SuppressWarnings("unchecked")
+  public MinMaxHeap(AnyType[] items, Comparator<? super AnyType> cmp) {
+    this.cmp = cmp;
+    currentSize = items.length;
+    array = (AnyType[]) new Object[(currentSize + 2) * 11 / 10];
+    System.arraycopy(items, 0, array, 1, currentSize);
+    buildHeap();
+  }
+
+  /**
+   * Insert into the priority queue, maintaining heap order.
+   * Duplicates are allowed.
+   *
+   * @param x the item to insert.
+   */
+  public void insert(AnyType x) {
+    if (currentSize == array.length - 1)
+      array = Arrays.copyOf(array, array.length * 2 + 1);
+    int hole = ++currentSize;
+    if (hole == 1) {
+      array[1] = x;
+      return;
+    }
+
+    // Decide once whether x belongs to the min or the max levels above it
+    int parent = hole / 2;
+    if (isMinLevel(hole)) {
+      if (compare(x, array[parent]) > 0) {
+        array[hole] = array[parent];
+        percolateUpMax(parent, x);
+      } else
+        percolateUpMin(hole, x);
+    } else {
+      if (compare(x, array[parent]) < 0) {
+        array[hole] = array[parent];
+        percolateUpMin(parent, x);
+      } else
+        percolateUpMax(hole, x);
+    }
+  }
+
+  /**
+   * Find the smallest item in the priority queue.
+   *
+   * @return the smallest item, or throw an UnderflowException if empty.
+   */
+  public AnyType findMin() {
+    if (isEmpty())
+      throw new UnderflowException();
+    return array[1];
+  }
+
+  /**
+   * Find the largest item in the priority queue.
+   *
+   * @return the largest item, or throw an UnderflowException if empty.
+   */
+  public AnyType findMax() {
+    return array[maxIndex()];
+  }
+
+  /**
+   * Remove the smallest item from the priority queue.
+   *
+   * @return the smallest item, or throw an UnderflowException if empty.
+   */
+  public AnyType deleteMin() {
+    AnyType minItem = findMin();
+    removeAt(1);
+    return minItem;
+  }
+
+  /**
+   * Remove the largest item from the priority queue.
+   *
+   * @return the largest item, or throw an UnderflowException if empty.
+   */
+  public AnyType deleteMax() {
+    int index = maxIndex();
+    AnyType maxItem = array[index];
+    removeAt(index);
+    return maxItem;
+  }
+
+  /**
+   * Test if the priority queue is logically empty.
+   *
+   * @return true if empty, false otherwise.
+   */
+  public boolean isEmpty() {
+    return currentSize == 0;
+  }
+
+  /**
+   * Make the priority queue logically empty.
+   */
+  public void makeEmpty() {
+    Arrays.fill(array, 1, currentSize + 1, null);
+    currentSize = 0;
+  }
+
+  public int size() {
+    return currentSize;
+  }
+
+  AnyType get(int index) {
+    return array[index];
+  }
+
+  /**
+   * Test if an index is on a min level: the root is on level 0.
+   */
+  static boolean isMinLevel(int index) {
+    return ((31 - Integer.numberOfLeadingZeros(index)) & 1) == 0;
+  }
+
+  /**
+   * The largest item is the root or the larger of its children.
+   */
+  private int maxIndex() {
+    if (isEmpty())
+      throw new UnderflowException();
+    if (currentSize == 1)
+      return 1;
+    if (currentSize == 2 || compare(array[2], array[3]) >= 0)
+      return 2;
+    return 3;
+  }
+
+  /**
+   * Fill a slot with the last item and restore the order below it. The last
+   * item fits above the slot: the slot is the root, or a child of the root
+   * holding the largest item.
+   */
+  private void removeAt(int index) {
+    AnyType last = array[currentSize];
+    array[currentSize--] = null;
+    if (index > currentSize)
+      return;
+    if (isMinLevel(index))
+      percolateDownMin(index, last);
+    else
+      percolateDownMax(index, last);
+  }
+
+  /**
+   * Establish heap order property from an arbitrary
+   * arrangement of items. Runs in linear time.
+   */
+  private void buildHeap() {
+    for (int i = currentSize / 2; i > 0; i--)
+      if (isMinLevel(i))
+        percolateDownMin(i, array[i]);
+      else
+        percolateDownMax(i, array[i]);
+  }
+
+  /**
+   * Internal method to percolate up along the min levels.
+   *
+   * @param hole the index on a min level at which the percolate begins.
+   * @param x    the item to place.
+   */
+  private void percolateUpMin(int hole, AnyType x) {
+    while (hole > 3 && compare(x, array[hole / 4]) < 0) {
+      array[hole] = array[hole / 4];
+      hole /= 4;
+    }
+    array[hole] = x;
+  }
+
+  /**
+   * Internal method to percolate up along the max levels.
+   *
+   * @param hole the index on a max level at which the percolate begins.
+   * @param x    the item to place.
+   */
+  private void percolateUpMax(int hole, AnyType x) {
+    while (hole > 3 && compare(x, array[hole / 4]) > 0) {
+      array[hole] = array[hole / 4];
+      hole /= 4;
+    }
+    array[hole] = x;
+  }
+
+  /**
+   * Internal method to percolate down from a min level. The smallest of the
+   * children and grandchildren moves up into the hole; when a grandchild
+   * moves, x may have to change places with the max-level node between.
+   *
+   * @param hole the index on a min level at which the percolate begins.
+   * @param x    the item to place.
+   */
+  private void percolateDownMin(int hole, AnyType x) {
+    while (2 * hole <= currentSize) {
+      int m = extremeDescendant(hole, false);
+      if (compare(array[m], x) >= 0)
+        break;
+      array[hole] = array[m];
+      boolean grandchild = m >= 4 * hole;
+      hole = m;
+      if (!grandchild)
+        break;
+      // Keep x not larger than the max-level node between
+      int parent = m / 2;
+      if (compare(x, array[parent]) > 0) {
+        AnyType temp = array[parent];
+        array[parent] = x;
+        x = temp;
+      }
+    }
+    array[hole] = x;
+  }
+
+  /**
+   * Internal method to percolate down from a max level, the mirror image of
+   * percolateDownMin.
+   *
+   * @param hole the index on a max level at which the percolate begins.
+   * @param x    the item to place.
+   */
+  private void percolateDownMax(int hole, AnyType x) {
+    while (2 * hole <= currentSize) {
+      int m = extremeDescendant(hole, true);
+      if (compare(array[m], x) <= 0)
+        break;
+      array[hole] = array[m];
+      boolean grandchild = m >= 4 * hole;
+      hole = m;
+      if (!grandchild)
+        break;
+      // Keep x not smaller than the min-level node between
+      int parent = m / 2;
+      if (compare(x, array[parent]) < 0) {
+        AnyType temp = array[parent];
+        array[parent] = x;
+        x = temp;
+      }
+    }
+    array[hole] = x;
+  }
+
+  /**
+   * Find the smallest or largest of the children and grandchildren of a node
+   * that has children.
+   *
+   * @param index   the node.
+   * @param largest true for the largest, false for the smallest.
+   * @return the index of the item.
+   */
+  private int extremeDescendant(int index, boolean largest) {
+    int best = 2 * index;
+    int last = Math.min(2 * index + 1, currentSize);
+    for (int i = best + 1; i <= last; i++)
+      if (isBetter(array[i], array[best], largest))
+        best = i;
+    last = Math.min(4 * index + 3, currentSize);
+    for (int i = 4 * index; i <= last; i++)
+      if (isBetter(array[i], array[best], largest))
+        best = i;
+    return best;
+  }
+
+  /**
+   * Compare in a direction without negating the result of compare, which
+   * may be Integer.MIN_VALUE.
+   */
+  private boolean isBetter(AnyType a, AnyType b, boolean largest) {
+    return largest ? compare(a, b) > 0 : compare(a, b) < 0;
+  }
+
+  @SuppressWarnings("unchecked")
+  private int compare(AnyType a, AnyType b) {
+    if (cmp != null)
+      return cmp.compare(a, b);
+    return ((Comparable<? super AnyType>) a).compareTo(b);
+  }
+
+  private static final int DEFAULT_CAPACITY = 10;
+
+  private final Comparator<? super AnyType> cmp; // null for natural order
+  private int currentSize; // Number of elements in heap
+  private AnyType[] array; // The heap array
+}
@@ -0,0 +1,206 @@
+package alda.theme5;
+
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+
+//MultiQueue class
+//
+//CONSTRUCTION: with optional relaxation factor c, thread count
+//            and Comparator
+//
+//******************PUBLIC OPERATIONS*********************
+//void insert( x )       --> Insert x
+//AnyType deleteMin( )   --> Return and remove a small item, or null
+//boolean isEmpty( )     --> Return true if empty
+//int size( )            --> Return the approximate size
+
+/**
+ * A relaxed concurrent priority queue made of c * P DHeaps, for P threads. No
+ * lock is ever waited for: insert puts the item in a random heap whose lock it
+ * can take with tryLock, and deleteMin samples two random heaps, reads their
+ * published minimums without locking and removes the minimum of the better
+ * one, again only if its lock is free. A busy heap is skipped by sampling
+ * again.
+ *
+ * deleteMin does not always return the smallest item, but an item of small
+ * rank: the expected rank error grows with the number of heaps, so c trades
+ * ordering quality against contention. Items inserted by one thread are not
+ * removed in order either.
+ */
+public class MultiQueue<AnyType> {
+
+  /**
+   * Construct the MultiQueue for the available processors with c = 2.
+   */
+  public MultiQueue() {
+    this(DEFAULT_RELAXATION, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Construct the MultiQueue.
+   *
+   * @param c       the number of heaps per thread, the relaxation factor.
+   * @param threads the number of threads expected to use the queue.
+   */
+  public MultiQueue(int c, int threads) {
+    this(c, threads, null);
+  }
+
+  /**
+   * Construct the MultiQueue.
+   *
+   * @param c       the number of heaps per thread, the relaxation factor.
+   * @param threads the number of threads expected to use the queue.
+   * @param cmp     the order of the items, or null for their natural order.
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  public MultiQueue(int c, int threads, Comparator<? super AnyType> cmp) throws IllegalArgumentException {
+    if (c < 1 || threads < 1)
+      throw new IllegalArgumentException();
+    this.cmp = cmp;
+    // Two choices need at least two heaps
+    heaps = new Heap[Math.max(2, c * threads)];
+    for (int i = 0; i < heaps.length; i++)
+      heaps[i] = new Heap<>(cmp);
+  }
+
+  /**
+   * Insert into the priority queue. Duplicates are allowed.
+   *
+   * @param x the item to insert.
+   */
+  public void insert(AnyType x) {
+    ThreadLocalRandom rnd = ThreadLocalRandom.current();
+    while (true) {
+      Heap<AnyType> heap = heaps[rnd.nextInt(heaps.length)];
+      if (heap.lock.tryLock()) {
+        try {
+          heap.heap.insert(x);
+          heap.publish();
+        } finally {
+          heap.lock.unlock();
+        }
+        return;
+      }
+    }
+  }
+
+  /**
+   * Remove a small item from the priority queue: the smaller of the minimums
+   * of two randomly chosen heaps.
+   *
+   * @return the item, or null if the queue was found empty.
+   */
+  public AnyType deleteMin() {
+    ThreadLocalRandom rnd = ThreadLocalRandom.current();
+    int emptySamples = 0;
+    while (true) {
+      int i = rnd.nextInt(heaps.length);
+      int j = rnd.nextInt(heaps.length - 1);
+      if (j >= i)
+        j++;
+      Heap<AnyType> a = heaps[i];
+      Heap<AnyType> b = heaps[j];
+      AnyType minA = a.min;
+      AnyType minB = b.min;
+
+      Heap<AnyType> heap;
+      if (minA == null && minB == null) {
+        // Looks empty; check every heap now and then before giving up
+        if (++emptySamples >= heaps.length && isEmpty())
+          return null;
+        continue;
+      } else if (minA == null)
+        heap = b;
+      else if (minB == null)
+        heap = a;
+      else
+        heap = compare(minA, minB) <= 0 ? a : b;
+
+      if (heap.lock.tryLock()) {
+        try {
+          // The minimum may have been taken since it was read
+          if (heap.heap.isEmpty())
+            continue;
+          AnyType minItem = heap.heap.deleteMin();
+          heap.publish();
+          return minItem;
+        } finally {
+          heap.lock.unlock();
+        }
+      }
+    }
+  }
+
+  /**
+   * Test if the priority queue is empty. Only exact when no other thread
+   * changes the queue.
+   *
+   * @return true if every heap is empty.
+   */
+  public boolean isEmpty() {
+    for (Heap<AnyType> heap : heaps)
+      if (heap.min != null)
+        return false;
+    return true;
+  }
+
+  /**
+   * Get the number of items. Only exact when no other thread changes the
+   * queue.
+   *
+   * @return the size.
+   */
+  public int size() {
+    int size = 0;
+    for (Heap<AnyType> heap : heaps)
+      size += heap.size;
+    return size;
+  }
+
+  /**
+   * Get the number of heaps.
+   *
+   * @return the heap count.
+   */
+  public int heapCount() {
+    return heaps.length;
+  }
+
+  @SuppressWarnings("unchecked")
+  private int compare(AnyType a, AnyType b) {
+    if (cmp != null)
+      return cmp.compare(a, b);
+    return ((Comparable<? super AnyType>) a).compareTo(b);
+  }
+
+  /**
+   * One DHeap with its lock and its minimum and size published for lock-free
+   * sampling.
+   */
+  private static class Heap<AnyType> {
+    final DHeap<AnyType> heap;
+    final ReentrantLock lock = new ReentrantLock();
+    volatile AnyType min; // null when empty
+    volatile int size;
+
+    Heap(Comparator<? super AnyType> cmp) {
+      heap = new DHeap<>(HEAP_CHILDREN, cmp);
+    }
+
+    /**
+     * Publish the minimum and size, called with the lock held.
+     */
+    void publish() {
+      min = heap.isEmpty() ? null : heap.findMin();
+      size = heap.size();
+    }
+  }
+
+  private static final int DEFAULT_RELAXATION = 2;
+  private static final int HEAP_CHILDREN = 4;
+
+  private final Heap<AnyType>[] heaps;
+  private final Comparator<? super AnyType> cmp; // null for natural order
+}
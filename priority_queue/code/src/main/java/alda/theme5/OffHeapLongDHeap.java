@@ -0,0 +1,412 @@
+package alda.theme5;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+//OffHeapLongDHeap class
+//
+//CONSTRUCTION: with optional d (that defaults to 4) and segment size,
+//            or with open( directory, d, segmentEntries ) for a file-backed heap
+//
+//******************PUBLIC OPERATIONS*********************
+//void insert( key, payload ) --> Insert key with a long payload
+//long deleteMin( )           --> Return and remove smallest key
+//long findMin( )             --> Return smallest key
+//long findMinPayload( )      --> Return payload of smallest key
+//boolean isEmpty( )          --> Return true if empty; else false
+//void makeEmpty( )           --> Remove all items
+//void force( )               --> Write a file-backed heap to disk
+//void close( )               --> Force and release the segments
+//******************ERRORS********************************
+//Throws UnderflowException as appropriate
+//Throws UncheckedIOException if a file-backed segment or the metadata
+//            cannot be written
+
+/**
+ * A d-heap of long keys with long payloads stored outside the Java heap, for
+ * queues too large for a long[] or an Object[]. Entries of 16 bytes are kept
+ * in segments of a power-of-two number of entries, so an index splits into a
+ * segment and an offset with a shift and a mask. The heap grows by adding a
+ * segment; nothing is ever copied. Indexes are long, so the size is only
+ * bounded by memory or disk.
+ *
+ * Segments are direct ByteBuffers, or with open, files in a directory mapped
+ * with MappedByteBuffer. A file-backed heap keeps its size and shape in a
+ * small metadata file written by force and close, and open on the same
+ * directory continues where it left off.
+ *
+ * Writes to a mapped segment reach the file whether or not force is called,
+ * so after a crash the segments may hold part of the changes since the last
+ * force and no longer match the metadata. The first insert or deleteMin
+ * after a force therefore marks the metadata dirty, on disk, before it
+ * touches a segment, and force marks it clean again. open refuses a dirty
+ * heap: it returns either exactly the items of the last force, or an
+ * IOException if anything changed after it.
+ */
+public class OffHeapLongDHeap implements AutoCloseable {
+  /**
+   * Construct the OffHeapLongDHeap in direct memory.
+   */
+  public OffHeapLongDHeap() {
+    this(DEFAULT_CHILDREN);
+  }
+
+  /**
+   * Construct the OffHeapLongDHeap in direct memory.
+   *
+   * @param d the amount of children for each node.
+   */
+  public OffHeapLongDHeap(int d) {
+    this(d, DEFAULT_SEGMENT_ENTRIES);
+  }
+
+  /**
+   * Construct the OffHeapLongDHeap in direct memory.
+   *
+   * @param d              the amount of children for each node.
+   * @param segmentEntries the number of entries per segment, a power of two.
+   */
+  public OffHeapLongDHeap(int d, int segmentEntries) throws IllegalArgumentException {
+    this(d, segmentEntries, null);
+  }
+
+  private OffHeapLongDHeap(int d, int segmentEntries, Path directory) throws IllegalArgumentException {
+    if (d < 2 || segmentEntries < 2 || Integer.bitCount(segmentEntries) != 1
+        || segmentEntries > MAX_SEGMENT_ENTRIES)
+      throw new IllegalArgumentException();
+    this.d = d;
+    this.segmentEntries = segmentEntries;
+    segmentShift = Integer.numberOfTrailingZeros(segmentEntries);
+    this.directory = directory;
+  }
+
+  /**
+   * Open a file-backed OffHeapLongDHeap, creating it if the directory has
+   * none.
+   *
+   * @param directory      the directory for the segment and metadata files.
+   * @param d              the amount of children for each node, if created.
+   * @param segmentEntries the number of entries per segment, if created.
+   * @return the heap, with the items it had at its last force.
+   * @throws IOException if the files cannot be read or do not match, or if
+   *                     the heap was changed after its last force.
+   */
+  public static OffHeapLongDHeap open(Path directory, int d, int segmentEntries) throws IOException {
+    Files.createDirectories(directory);
+    Path meta = directory.resolve(META_FILE);
+    if (!Files.exists(meta)) {
+      OffHeapLongDHeap heap = new OffHeapLongDHeap(d, segmentEntries, directory);
+      heap.force();
+      return heap;
+    }
+
+    ByteBuffer header = ByteBuffer.wrap(Files.readAllBytes(meta)).order(ORDER);
+    if (header.remaining() != META_SIZE || header.getLong() != MAGIC)
+      throw new IOException("Not a heap: " + meta);
+    OffHeapLongDHeap heap = new OffHeapLongDHeap(header.getInt(), header.getInt(), directory);
+    long size = header.getLong();
+    if (header.getInt() != CLEAN)
+      throw new IOException("Heap was changed after its last force: " + directory);
+    while (heap.capacity() <= size)
+      heap.addSegment();
+    heap.currentSize = size;
+    return heap;
+  }
+
+  /**
+   * Insert into the priority queue, maintaining heap order.
+   * Duplicates are allowed.
+   *
+   * @param key     the key to insert.
+   * @param payload the payload of the key.
+   */
+  public void insert(long key, long payload) {
+    checkOpen();
+    markDirty();
+    if (currentSize + 1 >= capacity())
+      addSegment();
+    percolateUp(++currentSize, key, payload);
+  }
+
+  /**
+   * Find the smallest key in the priority queue.
+   *
+   * @return the smallest key, or throw an UnderflowException if empty.
+   */
+  public long findMin() {
+    if (isEmpty())
+      throw new UnderflowException();
+    return key(1);
+  }
+
+  /**
+   * Find the payload of the smallest key in the priority queue.
+   *
+   * @return the payload, or throw an UnderflowException if empty.
+   */
+  public long findMinPayload() {
+    if (isEmpty())
+      throw new UnderflowException();
+    return payload(1);
+  }
+
+  /**
+   * Remove the smallest key from the priority queue.
+   *
+   * @return the smallest key, or throw an UnderflowException if empty.
+   */
+  public long deleteMin() {
+    if (isEmpty())
+      throw new UnderflowException();
+
+    markDirty();
+    long minItem = key(1);
+    long last = currentSize--;
+    if (currentSize > 0)
+      percolateDown(1, key(last), payload(last));
+    return minItem;
+  }
+
+  /**
+   * Test if the priority queue is logically empty.
+   *
+   * @return true if empty, false otherwise.
+   */
+  public boolean isEmpty() {
+    return currentSize == 0;
+  }
+
+  /**
+   * Make the priority queue logically empty. The segments are kept.
+   */
+  public void makeEmpty() {
+    currentSize = 0;
+  }
+
+  public long size() {
+    return currentSize;
+  }
+
+  public int segmentCount() {
+    return segmentCount;
+  }
+
+  long get(long index) {
+    return key(index);
+  }
+
+  public long parentIndex(long index) throws IllegalArgumentException {
+    if (index <= 1)
+      throw new IllegalArgumentException();
+    return (index - 2) / d + 1;
+  }
+
+  public long firstChildIndex(long index) throws IllegalArgumentException {
+    if (index <= 0)
+      throw new IllegalArgumentException();
+    return d * (index - 1) + 2;
+  }
+
+  /**
+   * Write the segments and the size of a file-backed heap to disk and mark
+   * it clean. Does nothing for a heap in direct memory.
+   *
+   * @throws IOException if the metadata cannot be written.
+   */
+  public void force() throws IOException {
+    checkOpen();
+    if (directory == null)
+      return;
+    for (int i = 0; i < segmentCount; i++)
+      ((MappedByteBuffer) segments[i]).force();
+    writeMeta(CLEAN);
+    dirty = false;
+  }
+
+  /**
+   * Force a file-backed heap to disk and release the segments. Direct and
+   * mapped memory is returned when the buffers are garbage collected.
+   *
+   * @throws IOException if the metadata cannot be written.
+   */
+  @Override
+  public void close() throws IOException {
+    if (segments == null)
+      return;
+    try {
+      force();
+    } finally {
+      segments = null;
+      segmentCount = 0;
+      currentSize = 0;
+    }
+  }
+
+  private void checkOpen() {
+    if (segments == null)
+      throw new IllegalStateException("Heap is closed");
+  }
+
+  /**
+   * Mark a file-backed heap dirty on disk before its segments first change
+   * after a force.
+   */
+  private void markDirty() {
+    if (dirty || directory == null)
+      return;
+    try {
+      writeMeta(DIRTY);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    dirty = true;
+  }
+
+  /**
+   * Replace the metadata in one step and wait until it is on disk, so a
+   * crash leaves the old or the new and segment writes come after it.
+   */
+  private void writeMeta(int state) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(META_SIZE).order(ORDER);
+    header.putLong(MAGIC).putInt(d).putInt(segmentEntries).putLong(currentSize).putInt(state);
+    header.flip();
+    Path temp = directory.resolve(META_FILE + ".tmp");
+    try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+      while (header.hasRemaining())
+        channel.write(header);
+      channel.force(true);
+    }
+    Files.move(temp, directory.resolve(META_FILE), StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+    // Make the rename durable too, where a directory can be opened
+    try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+      channel.force(true);
+    } catch (IOException e) {
+      // Not supported on every platform; the file itself is on disk
+    }
+  }
+
+  private long capacity() {
+    return (long) segmentCount << segmentShift;
+  }
+
+  /**
+   * Add one segment at the end. The existing segments are not touched.
+   */
+  private void addSegment() {
+    if (segmentCount == segments.length)
+      segments = Arrays.copyOf(segments, segments.length * 2);
+    int bytes = segmentEntries * ENTRY_SIZE;
+    ByteBuffer segment;
+    if (directory == null)
+      segment = ByteBuffer.allocateDirect(bytes);
+    else {
+      Path file = directory.resolve(String.format("segment-%05d.bin", segmentCount));
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+          StandardOpenOption.WRITE)) {
+        // The mapping stays valid after the channel is closed
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    segments[segmentCount++] = segment.order(ORDER);
+  }
+
+  private long key(long index) {
+    return segments[(int) (index >>> segmentShift)].getLong(offset(index));
+  }
+
+  private long payload(long index) {
+    return segments[(int) (index >>> segmentShift)].getLong(offset(index) + Long.BYTES);
+  }
+
+  private void set(long index, long key, long payload) {
+    ByteBuffer segment = segments[(int) (index >>> segmentShift)];
+    int offset = offset(index);
+    segment.putLong(offset, key);
+    segment.putLong(offset + Long.BYTES, payload);
+  }
+
+  private int offset(long index) {
+    return ((int) index & (segmentEntries - 1)) * ENTRY_SIZE;
+  }
+
+  /**
+   * Internal method to percolate up in the heap.
+   *
+   * @param hole    the index at which the percolate begins.
+   * @param key     the key to place.
+   * @param payload the payload to place with it.
+   */
+  private void percolateUp(long hole, long key, long payload) {
+    while (hole > 1) {
+      long parent = (hole - 2) / d + 1;
+      long parentKey = key(parent);
+      if (key >= parentKey)
+        break;
+      set(hole, parentKey, payload(parent));
+      hole = parent;
+    }
+    set(hole, key, payload);
+  }
+
+  /**
+   * Internal method to percolate down in the heap.
+   *
+   * @param hole    the index at which the percolate begins.
+   * @param key     the key to place.
+   * @param payload the payload to place with it.
+   */
+  private void percolateDown(long hole, long key, long payload) {
+    long firstChild;
+    while ((firstChild = d * (hole - 1) + 2) <= currentSize) {
+      long lastChild = Math.min(firstChild + d - 1, currentSize);
+      long prioChild = firstChild;
+      long prioKey = key(firstChild);
+      for (long child = firstChild + 1; child <= lastChild; child++) {
+        long childKey = key(child);
+        if (childKey < prioKey) {
+          prioChild = child;
+          prioKey = childKey;
+        }
+      }
+
+      if (prioKey >= key)
+        break;
+      set(hole, prioKey, payload(prioChild));
+      hole = prioChild;
+    }
+    set(hole, key, payload);
+  }
+
+  private static final int DEFAULT_CHILDREN = 4;
+  private static final int DEFAULT_SEGMENT_ENTRIES = 1 << 20;
+  private static final int ENTRY_SIZE = 2 * Long.BYTES; // Key, then payload
+  private static final int MAX_SEGMENT_ENTRIES = 1 << 26; // 1 GB, within a ByteBuffer
+  private static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+  private static final String META_FILE = "heap.meta";
+  private static final long MAGIC = 0x44486561704c6f6eL;
+  private static final int META_SIZE = 28;
+  private static final int CLEAN = 1;
+  private static final int DIRTY = 0;
+
+  private final int d; // Number of children per node
+  private final int segmentEntries;
+  private final int segmentShift; // log2 of segmentEntries
+  private final Path directory; // null in direct memory
+  private ByteBuffer[] segments = new ByteBuffer[8]; // null when closed
+  private int segmentCount;
+  private long currentSize; // Number of elements in heap
+  private boolean dirty; // Metadata on disk marked dirty since the last force
+}
@@ -0,0 +1,273 @@
+package alda.theme5;
+
+import java.util.Comparator;
+
+//PairingHeap class
+//
+//CONSTRUCTION: with optional Comparator
+//
+//******************PUBLIC OPERATIONS*********************
+//void insert( x )       --> Insert x
+//void meld( other )     --> Move all items of other into this heap
+//Comparable deleteMin( )--> Return and remove smallest item
+//Comparable findMin( )  --> Return smallest item
+//boolean isEmpty( )     --> Return true if empty; else false
+//void makeEmpty( )      --> Remove all items
+//******************ERRORS********************************
+//Throws UnderflowException as appropriate
+
+/**
+ * A mergeable priority queue with the operations of DHeap plus meld, for
+ * combining per-partition queues without moving their items one by one.
+ *
+ * The heap is a pairing heap with the auxiliary two-pass variant: besides the
+ * tree holding the minimum, there is a list of trees not yet compared with
+ * anything. insert and meld only append to that list, so both are O(1);
+ * findMin and deleteMin first pair up the list with the two-pass method and
+ * link the result to the main tree. deleteMin is O(log n) amortized.
+ *
+ * Removed nodes are kept in a bounded pool and reused by later inserts, so a
+ * heap with a steady size allocates nothing. Nodes move to the other heap on
+ * meld and return to that heap's pool.
+ */
+public class PairingHeap<AnyType> {
+  /**
+   * Construct the PairingHeap.
+   */
+  public PairingHeap() {
+    this(null);
+  }
+
+  /**
+   * Construct the PairingHeap.
+   *
+   * @param cmp the order of the items, or null for their natural order.
+   */
+  public PairingHeap(Comparator<? super AnyType> cmp) {
+    this.cmp = cmp;
+  }
+
+  /**
+   * Insert into the priority queue. Duplicates are allowed.
+   *
+   * @param x the item to insert.
+   */
+  public void insert(AnyType x) {
+    PairNode<AnyType> node = allocate(x);
+    if (auxHead == null)
+      auxHead = node;
+    else
+      auxTail.nextSibling = node;
+    auxTail = node;
+    currentSize++;
+  }
+
+  /**
+   * Move all items of another heap into this one in constant time. The other
+   * heap is empty afterwards. Both heaps must use the same order.
+   *
+   * @param other the heap to meld into this one.
+   */
+  public void meld(PairingHeap<AnyType> other) {
+    if (other == this)
+      throw new IllegalArgumentException("Cannot meld a heap with itself");
+    if (other.isEmpty())
+      return;
+
+    // The other root and its auxiliary list become part of our list
+    PairNode<AnyType> head = other.root;
+    PairNode<AnyType> tail = other.root;
+    if (head == null) {
+      head = other.auxHead;
+      tail = other.auxTail;
+    } else if (other.auxHead != null) {
+      head.nextSibling = other.auxHead;
+      tail = other.auxTail;
+    }
+    if (auxHead == null)
+      auxHead = head;
+    else
+      auxTail.nextSibling = head;
+    auxTail = tail;
+    currentSize += other.currentSize;
+
+    other.root = null;
+    other.auxHead = null;
+    other.auxTail = null;
+    other.currentSize = 0;
+  }
+
+  /**
+   * Find the smallest item in the priority queue.
+   *
+   * @return the smallest item, or throw an UnderflowException if empty.
+   */
+  public AnyType findMin() {
+    if (isEmpty())
+      throw new UnderflowException();
+    consolidate();
+    return root.element;
+  }
+
+  /**
+   * Remove the smallest item from the priority queue.
+   *
+   * @return the smallest item, or throw an UnderflowException if empty.
+   */
+  public AnyType deleteMin() {
+    AnyType minItem = findMin();
+    PairNode<AnyType> oldRoot = root;
+    root = oldRoot.leftChild == null ? null : combineSiblings(oldRoot.leftChild);
+    release(oldRoot);
+    currentSize--;
+    return minItem;
+  }
+
+  /**
+   * Test if the priority queue is logically empty.
+   *
+   * @return true if empty, false otherwise.
+   */
+  public boolean isEmpty() {
+    return currentSize == 0;
+  }
+
+  /**
+   * Make the priority queue logically empty.
+   */
+  public void makeEmpty() {
+    root = null;
+    auxHead = null;
+    auxTail = null;
+    currentSize = 0;
+  }
+
+  public int size() {
+    return currentSize;
+  }
+
+  /**
+   * Get the number of nodes kept for reuse.
+   *
+   * @return the pool size.
+   */
+  int pooled() {
+    return poolSize;
+  }
+
+  private static class PairNode<AnyType> {
+    AnyType element;
+    PairNode<AnyType> leftChild;
+    PairNode<AnyType> nextSibling; // Also links the auxiliary list and the pool
+  }
+
+  private PairNode<AnyType> allocate(AnyType x) {
+    PairNode<AnyType> node = pool;
+    if (node == null)
+      node = new PairNode<>();
+    else {
+      pool = node.nextSibling;
+      node.nextSibling = null;
+      poolSize--;
+    }
+    node.element = x;
+    return node;
+  }
+
+  private void release(PairNode<AnyType> node) {
+    node.element = null;
+    node.leftChild = null;
+    node.nextSibling = null;
+    if (poolSize < POOL_LIMIT) {
+      node.nextSibling = pool;
+      pool = node;
+      poolSize++;
+    }
+  }
+
+  /**
+   * Combine the auxiliary trees with two-pass pairing and link the result to
+   * the main tree.
+   */
+  private void consolidate() {
+    if (auxHead == null)
+      return;
+    PairNode<AnyType> aux = combineSiblings(auxHead);
+    auxHead = null;
+    auxTail = null;
+    root = root == null ? aux : compareAndLink(root, aux);
+  }
+
+  /**
+   * Internal method that is the basic operation to maintain order. Links
+   * first and second together to satisfy heap order. The sibling links of
+   * both must already be cleared.
+   *
+   * @return the root of the combined tree.
+   */
+  private PairNode<AnyType> compareAndLink(PairNode<AnyType> first, PairNode<AnyType> second) {
+    if (compare(second.element, first.element) < 0) {
+      PairNode<AnyType> temp = first;
+      first = second;
+      second = temp;
+    }
+    second.nextSibling = first.leftChild;
+    first.leftChild = second;
+    return first;
+  }
+
+  /**
+   * Internal method that implements two-pass merging. The first pass links
+   * pairs from left to right and keeps the results in a list in reverse, so
+   * the second pass can link them from right to left without an array.
+   *
+   * @param firstSibling the first of a list of trees.
+   * @return the root of the combined tree.
+   */
+  private PairNode<AnyType> combineSiblings(PairNode<AnyType> firstSibling) {
+    PairNode<AnyType> reversed = null;
+    PairNode<AnyType> current = firstSibling;
+    while (current != null) {
+      PairNode<AnyType> first = current;
+      PairNode<AnyType> second = first.nextSibling;
+      first.nextSibling = null;
+      PairNode<AnyType> pair = first;
+      current = null;
+      if (second != null) {
+        current = second.nextSibling;
+        second.nextSibling = null;
+        pair = compareAndLink(first, second);
+      }
+      pair.nextSibling = reversed;
+      reversed = pair;
+    }
+
+    PairNode<AnyType> result = reversed;
+    reversed = reversed.nextSibling;
+    result.nextSibling = null;
+    while (reversed != null) {
+      PairNode<AnyType> next = reversed.nextSibling;
+      reversed.nextSibling = null;
+      result = compareAndLink(reversed, result);
+      reversed = next;
+    }
+    return result;
+  }
+
+  @SuppressWarnings("unchecked")
+  private int compare(AnyType a, AnyType b) {
+    if (cmp != null)
+      return cmp.compare(a, b);
+    return ((Comparable<? super AnyType>) a).compareTo(b);
+  }
+
+  private static final int POOL_LIMIT = 1 << 16;
+
+  private final Comparator<? super AnyType> cmp; // null for natural order
+  private PairNode<AnyType> root; // Tree holding the minimum once consolidated
+  private PairNode<AnyType> auxHead; // Trees not yet compared, in insertion order
+  private PairNode<AnyType> auxTail;
+  private PairNode<AnyType> pool; // Released nodes
+  private int poolSize;
+  private int currentSize;
+}
@@ -0,0 +1,155 @@
+package alda.theme5;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collector;
+
+//TopK class
+//
+//CONSTRUCTION: with k and optional Comparator
+//
+//******************PUBLIC OPERATIONS*********************
+//boolean offer( x )     --> Keep x if it is among the k largest so far
+//TopK merge( other )    --> Add the items kept by other
+//List toList( )         --> Return the items kept, largest first
+//Collector collector( k ) --> Collect the k largest items of a stream
+
+/**
+ * Keeps the k largest items of a stream in O(k) memory. The items are kept in
+ * a DHeap ordered so that its minimum is the smallest item kept, the one to
+ * give up first. Most items of a long stream are smaller than that minimum and
+ * are rejected with a single comparison; an item that is kept replaces the
+ * minimum with one percolateDown.
+ *
+ * For parallel streams, collector gives each thread its own TopK and merges
+ * them at the end.
+ */
+public class TopK<AnyType> {
+
+  /**
+   * Construct the TopK for items in their natural order.
+   *
+   * @param k the number of items to keep.
+   */
+  public TopK(int k) {
+    this(k, null);
+  }
+
+  /**
+   * Construct the TopK.
+   *
+   * @param k   the number of items to keep.
+   * @param cmp the order of the items, or null for their natural order.
+   */
+  public TopK(int k, Comparator<? super AnyType> cmp) throws IllegalArgumentException {
+    if (k < 1)
+      throw new IllegalArgumentException();
+    this.k = k;
+    this.cmp = cmp;
+    heap = new DHeap<>(HEAP_CHILDREN, cmp);
+  }
+
+  /**
+   * Offer an item, keeping it if it is among the k largest so far.
+   *
+   * @param x the item.
+   * @return true if the item was kept.
+   */
+  public boolean offer(AnyType x) {
+    if (heap.size() < k) {
+      heap.insert(x);
+      return true;
+    }
+    // Fast reject: not larger than the smallest item kept
+    if (compare(x, heap.findMin()) <= 0)
+      return false;
+    heap.replaceMin(x);
+    return true;
+  }
+
+  /**
+   * Add the items kept by another TopK with the same k and order.
+   *
+   * @param other the other TopK.
+   * @return this TopK.
+   */
+  public TopK<AnyType> merge(TopK<AnyType> other) {
+    for (int i = 1; i <= other.heap.size(); i++)
+      offer(other.heap.get(i));
+    return this;
+  }
+
+  /**
+   * Get the smallest item kept, which an item must beat to be kept once k
+   * items are kept.
+   *
+   * @return the smallest item, or throw an UnderflowException if empty.
+   */
+  public AnyType threshold() {
+    return heap.findMin();
+  }
+
+  /**
+   * Get the items kept.
+   *
+   * @return a new list with the items, largest first.
+   */
+  public List<AnyType> toList() {
+    List<AnyType> items = new ArrayList<>(heap.size());
+    for (int i = 1; i <= heap.size(); i++)
+      items.add(heap.get(i));
+    items.sort(Collections.reverseOrder(this::compare));
+    return items;
+  }
+
+  public int size() {
+    return heap.size();
+  }
+
+  public int k() {
+    return k;
+  }
+
+  /**
+   * Get a collector keeping the k largest items of a stream in their natural
+   * order. In a parallel stream every thread fills its own TopK.
+   *
+   * @param k the number of items to keep.
+   * @return the collector, giving the items largest first.
+   */
+  public static <T extends Comparable<? super T>> Collector<T, ?, List<T>> collector(int k) {
+    return collector(k, null);
+  }
+
+  /**
+   * Get a collector keeping the k largest items of a stream. In a parallel
+   * stream every thread fills its own TopK.
+   *
+   * @param k   the number of items to keep.
+   * @param cmp the order of the items, or null for their natural order.
+   * @return the collector, giving the items largest first.
+   */
+  public static <T> Collector<T, ?, List<T>> collector(int k, Comparator<? super T> cmp) {
+    return Collector.<T, TopK<T>, List<T>>of(
+        () -> new TopK<>(k, cmp),
+        TopK::offer,
+        TopK::merge,
+        TopK::toList,
+        Collector.Characteristics.UNORDERED);
+  }
+
+  @SuppressWarnings("unchecked")
+  private int compare(AnyType a, AnyType b) {
+    if (cmp != null)
+      return cmp.compare(a, b);
+    return ((Comparable<? super AnyType>) a).compareTo(b);
+  }
+
+  private static final int HEAP_CHILDREN = 4;
+
+  private final int k;
+  private final Comparator<? super AnyType> cmp; // null for natural order
+  private final DHeap<AnyType> heap; // The items kept, smallest on top
+}
@@ -0,0 +1,66 @@
+package alda.theme5;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+
+import java.util.PriorityQueue;
+import java.util.Random;
+
+public class BlockedLongDHeapTest {
+
+  @Test
+  public void testIndexMath() {
+    for (int d = 2; d <= 8; d++)
+      for (int blockBytes : new int[] { 64, 256, 4096 }) {
+        BlockedLongDHeap heap = new BlockedLongDHeap(d, blockBytes);
+        assertTrue(heap.blockSize() * Long.BYTES <= blockBytes);
+        for (int index = 1; index < 100_000; index++) {
+          int parent = heap.parentIndex(index);
+          assertTrue(parent < index);
+          long firstChild = heap.firstChildIndex(parent);
+          assertTrue(firstChild <= index && index < firstChild + d, "d " + d + " index " + index);
+        }
+      }
+    BlockedLongDHeap heap = new BlockedLongDHeap(2, 4096);
+    assertEquals(510, heap.blockSize());
+    // The eight levels below the root share a block
+    assertEquals(1, heap.firstChildIndex(0));
+    assertEquals(509, heap.firstChildIndex(254));
+    assertEquals(511, heap.firstChildIndex(255));
+  }
+
+  @Test
+  public void testMatchesPriorityQueue() {
+    for (int d : new int[] { 2, 3, 4 }) {
+      Random rnd = new Random(d);
+      PriorityQueue<Long> expected = new PriorityQueue<>();
+      BlockedLongDHeap heap = new BlockedLongDHeap(d, 128);
+      for (int op = 0; op < 50_000; op++) {
+        int choice = rnd.nextInt(5);
+        if (expected.isEmpty() || choice < 3) {
+          long key = rnd.nextInt(10_000);
+          heap.insert(key);
+          expected.add(key);
+        } else if (choice == 3) {
+          long key = rnd.nextInt(10_000);
+          assertEquals(expected.poll(), heap.replaceMin(key));
+          expected.add(key);
+        } else
+          assertEquals(expected.poll(), heap.deleteMin());
+        assertEquals(expected.size(), heap.size());
+      }
+      for (int index = 1; index < heap.size(); index++)
+        assertTrue(heap.get(heap.parentIndex(index)) <= heap.get(index));
+      while (!expected.isEmpty())
+        assertEquals(expected.poll(), heap.deleteMin());
+      assertThrows(UnderflowException.class, heap::findMin);
+    }
+  }
+
+  @Test
+  public void testIllegalArguments() {
+    assertThrows(IllegalArgumentException.class, () -> new BlockedLongDHeap(1));
+    assertThrows(IllegalArgumentException.class, () -> new BlockedLongDHeap(16, 64));
+    assertThrows(IllegalArgumentException.class, () -> new BlockedLongDHeap().parentIndex(0));
+  }
+}
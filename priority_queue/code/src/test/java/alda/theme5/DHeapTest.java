@@ -4,6 +4,8 @@ package alda.theme5;
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.*;
 
+import java.util.Comparator;
+import java.util.List;
 import java.util.PriorityQueue;
 import java.util.Random;
 
@@ -192,4 +194,86 @@ public class DHeapTest {
     testValues(10, 17, 70, 12, 100, 51, 52, 23);
   }
 
+  @Test
+  public void testComparator() {
+    DHeap<String> byLength = new DHeap<>(3, Comparator.comparingInt(String::length));
+    for (String s : new String[] { "ccc", "a", "dddd", "bb", "" })
+      byLength.insert(s);
+    for (String s : new String[] { "", "a", "bb", "ccc", "dddd" })
+      assertEquals(s, byLength.deleteMin());
+    assertNotNull(byLength.comparator());
+    assertNull(heap.comparator());
+  }
+
+  @Test
+  public void testNaturalOrderComparatorGivesSameLayout() {
+    Random rnd = new Random(42);
+    for (int d = 2; d <= 8; d++) {
+      DHeap<Integer> natural = new DHeap<>(d);
+      DHeap<Integer> withComparator = new DHeap<>(d, Comparator.naturalOrder());
+      for (int n = 0; n < 2000; n++) {
+        int tal = rnd.nextInt(100);
+        natural.insert(tal);
+        withComparator.insert(tal);
+        if (rnd.nextBoolean())
+          assertEquals(natural.deleteMin(), withComparator.deleteMin());
+      }
+      for (int i = 1; i <= natural.size(); i++)
+        assertEquals(natural.get(i), withComparator.get(i));
+    }
+  }
+
+  @Test
+  public void testBranchReducedChildScanGivesSameLayout() {
+    Random rnd = new Random(42);
+    // Extreme results check that only the sign of compare is used
+    Comparator<Integer> extreme = (a, b) -> a < b ? Integer.MIN_VALUE : a > b ? Integer.MAX_VALUE : 0;
+    for (int d = 2; d <= 8; d++) {
+      DHeap<Integer> branching = new DHeap<>(d);
+      DHeap<Integer> branchReduced = new DHeap<>(d, extreme);
+      branchReduced.setBranchReducedChildScan(true);
+      for (int n = 0; n < 2000; n++) {
+        int tal = rnd.nextInt(100);
+        branching.insert(tal);
+        branchReduced.insert(tal);
+        if (rnd.nextBoolean())
+          assertEquals(branching.deleteMin(), branchReduced.deleteMin());
+      }
+      for (int i = 1; i <= branching.size(); i++)
+        assertEquals(branching.get(i), branchReduced.get(i));
+    }
+  }
+
+  @Test
+  public void testInsertAll() {
+    Random rnd = new Random(42);
+    for (int d = 2; d <= 6; d++)
+      for (int n : new int[] { 0, 1, 5, 100, 1000 })
+        for (int k : new int[] { 1, 3, 10, 200, 5000 }) {
+          DHeap<Integer> bulk = new DHeap<>(d);
+          PriorityQueue<Integer> oracle = new PriorityQueue<>();
+          for (int i = 0; i < n; i++) {
+            int tal = rnd.nextInt(1000);
+            bulk.insert(tal);
+            oracle.add(tal);
+          }
+          Integer[] batch = new Integer[k + 2];
+          for (int i = 0; i < batch.length; i++)
+            batch[i] = rnd.nextInt(1000);
+          bulk.insertAll(batch, 1, k + 1);
+          for (int i = 1; i <= k; i++)
+            oracle.add(batch[i]);
+
+          assertEquals(n + k, bulk.size());
+          for (int i = 2; i <= bulk.size(); i++)
+            assertTrue(bulk.get(bulk.parentIndex(i)) <= bulk.get(i));
+          while (!oracle.isEmpty())
+            assertEquals(oracle.poll(), bulk.deleteMin());
+        }
+
+    heap.insertAll(List.of(3, 1, 2));
+    assertEquals(1, heap.deleteMin());
+    assertThrows(IndexOutOfBoundsException.class, () -> heap.insertAll(new Integer[2], 1, 3));
+  }
+
 }
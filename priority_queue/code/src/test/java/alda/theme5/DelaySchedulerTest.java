@@ -0,0 +1,164 @@
+package alda.theme5;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class DelaySchedulerTest {
+
+  @Test
+  public void testExpiresOnTimeThroughCascadesAndOverflow() {
+    // Two levels of four slots reach 16 ticks; later deadlines overflow
+    AtomicLong clock = new AtomicLong(1_000);
+    DelayScheduler<Integer> scheduler = new DelayScheduler<>(10, TimeUnit.NANOSECONDS, 2, 2, clock::get);
+    Random rnd = new Random(42);
+    int n = 5_000;
+    long[] deadline = new long[n];
+    List<DelayScheduler.Timeout<Integer>> timeouts = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      long delay = rnd.nextInt(3_000);
+      deadline[i] = clock.get() + delay;
+      timeouts.add(scheduler.schedule(i, delay, TimeUnit.NANOSECONDS));
+      // Schedule while time passes, too
+      if (i % 10 == 0)
+        clock.addAndGet(rnd.nextInt(5));
+    }
+    boolean[] cancelled = new boolean[n];
+    for (int i = 0; i < n; i += 3)
+      cancelled[i] = timeouts.get(i).cancel();
+    assertFalse(timeouts.get(0).cancel());
+    assertEquals(n - (n + 2) / 3, scheduler.size());
+
+    boolean[] taken = new boolean[n];
+    List<Integer> batch = new ArrayList<>();
+    while (scheduler.size() > 0) {
+      clock.addAndGet(1 + rnd.nextInt(40));
+      long now = clock.get();
+      batch.clear();
+      scheduler.drainTo(batch, Integer.MAX_VALUE);
+      long previous = 0;
+      for (int i : batch) {
+        assertFalse(cancelled[i]);
+        assertFalse(taken[i]);
+        taken[i] = true;
+        assertTrue(deadline[i] <= now, "Early: " + i);
+        // Ticks are 10 ns, so order is only kept between ticks
+        assertTrue(deadline[i] / 10 >= previous - 1);
+        previous = deadline[i] / 10;
+        assertTrue(timeouts.get(i).isExpired());
+      }
+      // Everything due a whole tick ago has expired
+      for (int i = 0; i < n; i++)
+        if (!cancelled[i] && deadline[i] + 10 <= now)
+          assertTrue(taken[i], "Late: " + i);
+    }
+    for (int i = 0; i < n; i++)
+      assertTrue(cancelled[i] || taken[i]);
+    assertNull(scheduler.poll());
+  }
+
+  @Test
+  public void testCancelInOverflowIsPurged() {
+    AtomicLong clock = new AtomicLong();
+    DelayScheduler<String> scheduler = new DelayScheduler<>(1, TimeUnit.NANOSECONDS, 2, 1, clock::get);
+    List<DelayScheduler.Timeout<String>> timeouts = new ArrayList<>();
+    for (int i = 0; i < 100; i++)
+      timeouts.add(scheduler.schedule("x" + i, 100 + i, TimeUnit.NANOSECONDS));
+    for (int i = 0; i < 99; i++)
+      assertTrue(timeouts.get(i).cancel());
+    assertTrue(timeouts.get(0).isCancelled());
+    assertEquals(1, scheduler.size());
+
+    clock.set(198);
+    assertNull(scheduler.poll());
+    clock.set(199);
+    assertEquals("x99", scheduler.poll());
+    assertTrue(timeouts.get(99).isExpired());
+    assertFalse(timeouts.get(99).cancel());
+  }
+
+  @Test
+  public void testLongIdleSkipsEmptyTicks() {
+    // 2^40 ticks of 1 ns: stepping tick by tick would not finish
+    AtomicLong clock = new AtomicLong();
+    DelayScheduler<String> scheduler = new DelayScheduler<>(1, TimeUnit.NANOSECONDS, 8, 6, clock::get);
+    long far = (1L << 40) + 12_345;
+    scheduler.schedule("soon", 5, TimeUnit.NANOSECONDS);
+    scheduler.schedule("far", far, TimeUnit.NANOSECONDS);
+    scheduler.schedule("overflow", 1L << 50, TimeUnit.NANOSECONDS);
+
+    clock.set(far - 1);
+    assertEquals("soon", scheduler.poll());
+    assertNull(scheduler.poll());
+    clock.set(far);
+    assertEquals("far", scheduler.poll());
+    assertNull(scheduler.poll());
+    clock.set((1L << 50) - 1);
+    assertNull(scheduler.poll());
+    clock.set(1L << 50);
+    assertEquals("overflow", scheduler.poll());
+    assertEquals(0, scheduler.size());
+  }
+
+  @Test
+  public void testZeroDelayAndNullItem() {
+    DelayScheduler<String> scheduler = new DelayScheduler<>();
+    scheduler.schedule("now", 0, TimeUnit.SECONDS);
+    scheduler.schedule("later", 1, TimeUnit.HOURS);
+    assertEquals("now", scheduler.poll());
+    assertNull(scheduler.poll());
+    assertThrows(IllegalArgumentException.class, () -> scheduler.schedule(null, 1, TimeUnit.SECONDS));
+    assertThrows(IllegalArgumentException.class,
+        () -> new DelayScheduler<String>(1, TimeUnit.MILLISECONDS, 0, 3, System::nanoTime));
+  }
+
+  @Test
+  public void testTakeWaitsForDeadlines() throws InterruptedException {
+    DelayScheduler<Integer> scheduler = new DelayScheduler<>();
+    int consumers = 4;
+    int n = 200;
+    AtomicInteger taken = new AtomicInteger();
+    AtomicInteger early = new AtomicInteger();
+    long[] deadline = new long[n];
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < consumers; t++) {
+      Thread thread = new Thread(() -> {
+        try {
+          while (true) {
+            int i = scheduler.take();
+            if (i < 0)
+              return;
+            if (System.nanoTime() < deadline[i])
+              early.incrementAndGet();
+            taken.incrementAndGet();
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+
+    Random rnd = new Random(1);
+    for (int i = 0; i < n; i++) {
+      long delay = TimeUnit.MILLISECONDS.toNanos(rnd.nextInt(300));
+      deadline[i] = System.nanoTime() + delay;
+      scheduler.schedule(i, delay, TimeUnit.NANOSECONDS);
+    }
+    for (int t = 0; t < consumers; t++)
+      scheduler.schedule(-1, 400, TimeUnit.MILLISECONDS);
+    for (Thread thread : threads) {
+      thread.join(10_000);
+      assertFalse(thread.isAlive());
+    }
+    assertEquals(n, taken.get());
+    assertEquals(0, early.get());
+  }
+}
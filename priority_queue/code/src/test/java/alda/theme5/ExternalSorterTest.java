@@ -0,0 +1,95 @@
+package alda.theme5;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+public class ExternalSorterTest {
+
+  @TempDir
+  Path dir;
+
+  private Path write(long[] records) throws IOException {
+    Path file = dir.resolve("input.bin");
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+      for (long record : records)
+        out.writeLong(record);
+    }
+    return file;
+  }
+
+  private long[] read(Path file) throws IOException {
+    long[] records = new long[(int) (Files.size(file) / Long.BYTES)];
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      for (int i = 0; i < records.length; i++)
+        records[i] = in.readLong();
+    }
+    return records;
+  }
+
+  @Test
+  public void testReplaceMinAndBuildHeap() {
+    LongDHeap heap = new LongDHeap(new long[] { 9, 8, 7, 6, 5, 4, 3, 2, 1, 0 }, 4);
+    assertEquals(0, heap.replaceMin(10));
+    for (long expected = 1; expected <= 10; expected++)
+      assertEquals(expected, heap.deleteMin());
+  }
+
+  @Test
+  public void testSortsWithSeveralMergePasses() throws IOException {
+    long[] records = new Random(7).longs(50_000).toArray();
+    Path output = dir.resolve("output.bin");
+    ExternalSorter sorter = new ExternalSorter(1000, 4, 4096, dir);
+    ExternalSorter.Result result = sorter.sort(write(records), output);
+
+    long[] expected = records.clone();
+    Arrays.sort(expected);
+    assertArrayEquals(expected, read(output));
+    assertEquals(records.length, result.records());
+    // Replacement selection makes runs of about twice the memory on random
+    // input
+    assertTrue(result.runs() < records.length / 1000 * 3 / 4, "runs: " + result.runs());
+    assertTrue(result.mergePasses() > 1);
+    assertTrue(result.megabytesPerSecond() > 0);
+    // Only input and output are left
+    try (var files = Files.list(dir)) {
+      assertEquals(2, files.count());
+    }
+  }
+
+  @Test
+  public void testSortedInputGivesOneRun() throws IOException {
+    long[] records = new long[10_000];
+    for (int i = 0; i < records.length; i++)
+      records[i] = i / 3;
+    Path output = dir.resolve("output.bin");
+    ExternalSorter.Result result = new ExternalSorter(100, 2, 100, dir).sort(write(records), output);
+    assertEquals(1, result.runs());
+    assertArrayEquals(records, read(output));
+  }
+
+  @Test
+  public void testEmptyInput() throws IOException {
+    Path output = dir.resolve("output.bin");
+    ExternalSorter.Result result = new ExternalSorter(10, 2, 64, dir).sort(write(new long[0]), output);
+    assertEquals(0, result.runs());
+    assertEquals(0, Files.size(output));
+  }
+
+  @Test
+  public void testIllegalArguments() {
+    assertThrows(IllegalArgumentException.class, () -> new ExternalSorter(0, 2, 64, dir));
+    assertThrows(IllegalArgumentException.class, () -> new ExternalSorter(10, 1, 64, dir));
+    assertThrows(IllegalArgumentException.class, () -> new ExternalSorter(10, 2, 4, dir));
+  }
+}
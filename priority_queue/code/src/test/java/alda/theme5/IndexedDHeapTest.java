@@ -0,0 +1,120 @@
+package alda.theme5;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+public class IndexedDHeapTest {
+
+  /**
+   * Check the heap order and the position map after every operation.
+   */
+  private static void checkInvariants(IndexedDHeap<Integer> heap) {
+    for (int i = 2; i <= heap.size(); i++)
+      assertTrue(heap.get(heap.handleAt(heap.parentIndex(i))) <= heap.get(heap.handleAt(i)));
+  }
+
+  @Test
+  public void testAgainstOracle() {
+    Random rnd = new Random(42);
+    for (int d = 2; d <= 6; d++) {
+      IndexedDHeap<Integer> heap = new IndexedDHeap<>(d);
+      // Oracle of (item, handle) pairs, ordered like the heap
+      TreeMap<Long, Integer> oracle = new TreeMap<>();
+      List<Integer> handles = new ArrayList<>();
+      int[] items = new int[100_000];
+
+      for (int n = 0; n < 20_000; n++) {
+        int op = rnd.nextInt(5);
+        if (op <= 1 || handles.isEmpty()) {
+          int x = rnd.nextInt(1000);
+          int handle = heap.insert(x);
+          assertFalse(oracle.containsValue(handle));
+          items[handle] = x;
+          oracle.put((long) x << 32 | handle, handle);
+          handles.add(handle);
+          continue;
+        }
+
+        int handle = handles.get(rnd.nextInt(handles.size()));
+        int x = items[handle];
+        if (op == 2) {
+          int smaller = x - rnd.nextInt(100);
+          heap.decreaseKey(handle, smaller);
+          oracle.remove((long) x << 32 | handle);
+          oracle.put((long) smaller << 32 | handle, handle);
+          items[handle] = smaller;
+        } else if (op == 3) {
+          int larger = x + rnd.nextInt(100);
+          heap.increaseKey(handle, larger);
+          oracle.remove((long) x << 32 | handle);
+          oracle.put((long) larger << 32 | handle, handle);
+          items[handle] = larger;
+        } else {
+          assertEquals(x, heap.remove(handle));
+          oracle.remove((long) x << 32 | handle);
+          handles.remove((Integer) handle);
+          assertFalse(heap.contains(handle));
+        }
+
+        if (rnd.nextInt(4) == 0 && !heap.isEmpty()) {
+          int min = heap.findMin();
+          assertEquals(oracle.firstKey() >> 32, min);
+          int minHandle = heap.findMinHandle();
+          assertEquals(min, items[minHandle]);
+          assertEquals(min, heap.deleteMin());
+          oracle.remove((long) min << 32 | minHandle);
+          handles.remove((Integer) minHandle);
+        }
+        assertEquals(oracle.size(), heap.size());
+      }
+      checkInvariants(heap);
+      for (int handle : handles)
+        assertTrue(heap.contains(handle));
+    }
+  }
+
+  @Test
+  public void testHandlesAreReused() {
+    IndexedDHeap<Integer> heap = new IndexedDHeap<>(3);
+    for (int i = 0; i < 100; i++)
+      assertEquals(i, heap.insert(i));
+    for (int i = 0; i < 50; i++)
+      heap.deleteMin();
+    for (int i = 0; i < 50; i++)
+      assertTrue(heap.insert(i) < 100);
+    assertEquals(100, heap.size());
+    checkInvariants(heap);
+  }
+
+  @Test
+  public void testComparator() {
+    IndexedDHeap<String> byLength = new IndexedDHeap<>(3, Comparator.comparingInt(String::length));
+    int ccc = byLength.insert("ccc");
+    for (String s : new String[] { "a", "dddd", "bb" })
+      byLength.insert(s);
+    byLength.decreaseKey(ccc, "");
+    assertThrows(IllegalArgumentException.class, () -> byLength.decreaseKey(ccc, "zz"));
+    for (String s : new String[] { "", "a", "bb", "dddd" })
+      assertEquals(s, byLength.deleteMin());
+  }
+
+  @Test
+  public void testIllegalUse() {
+    IndexedDHeap<Integer> heap = new IndexedDHeap<>();
+    int handle = heap.insert(5);
+    assertThrows(IllegalArgumentException.class, () -> heap.decreaseKey(handle, 6));
+    assertThrows(IllegalArgumentException.class, () -> heap.increaseKey(handle, 4));
+    assertThrows(IllegalArgumentException.class, () -> heap.remove(handle + 1));
+    assertThrows(IllegalArgumentException.class, () -> heap.get(-1));
+    heap.remove(handle);
+    assertThrows(IllegalArgumentException.class, () -> heap.remove(handle));
+    assertThrows(UnderflowException.class, heap::deleteMin);
+  }
+
+}
@@ -0,0 +1,120 @@
+package alda.theme5;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.TreeMap;
+
+public class MinMaxHeapTest {
+
+  private static <T> void assertHeapOrder(MinMaxHeap<T> heap, Comparator<? super T> cmp) {
+    for (int i = 2; i <= heap.size(); i++)
+      for (int ancestor = i / 2; ancestor >= 1; ancestor /= 2) {
+        int c = cmp.compare(heap.get(ancestor), heap.get(i));
+        if (MinMaxHeap.isMinLevel(ancestor))
+          assertTrue(c <= 0, "min level " + ancestor + " above " + i);
+        else
+          assertTrue(c >= 0, "max level " + ancestor + " above " + i);
+      }
+  }
+
+  private static void add(TreeMap<Integer, Integer> multiset, int x) {
+    multiset.merge(x, 1, Integer::sum);
+  }
+
+  private static void remove(TreeMap<Integer, Integer> multiset, int x) {
+    if (multiset.merge(x, -1, Integer::sum) == 0)
+      multiset.remove(x);
+  }
+
+  @Test
+  public void testMatchesSortedMultiset() {
+    Random rnd = new Random(42);
+    MinMaxHeap<Integer> heap = new MinMaxHeap<>();
+    TreeMap<Integer, Integer> expected = new TreeMap<>();
+    for (int op = 0; op < 50_000; op++) {
+      int choice = rnd.nextInt(4);
+      if (expected.isEmpty() || choice < 2) {
+        int x = rnd.nextInt(1000);
+        heap.insert(x);
+        add(expected, x);
+      } else if (choice == 2) {
+        assertEquals(expected.firstKey(), heap.findMin());
+        int x = heap.deleteMin();
+        assertEquals(expected.firstKey(), x);
+        remove(expected, x);
+      } else {
+        assertEquals(expected.lastKey(), heap.findMax());
+        int x = heap.deleteMax();
+        assertEquals(expected.lastKey(), x);
+        remove(expected, x);
+      }
+      if (op % 1000 == 0)
+        assertHeapOrder(heap, Comparator.naturalOrder());
+    }
+    heap.makeEmpty();
+    assertTrue(heap.isEmpty());
+    assertThrows(UnderflowException.class, heap::findMin);
+    assertThrows(UnderflowException.class, heap::deleteMax);
+  }
+
+  @Test
+  public void testBuildFromArray() {
+    for (int n = 0; n < 200; n++) {
+      Integer[] items = new Random(n).ints(n, 0, 50).boxed().toArray(Integer[]::new);
+      MinMaxHeap<Integer> heap = new MinMaxHeap<>(items);
+      assertEquals(n, heap.size());
+      assertHeapOrder(heap, Comparator.naturalOrder());
+
+      Integer[] sorted = items.clone();
+      Arrays.sort(sorted);
+      // Take from both ends alternately
+      int low = 0;
+      int high = n - 1;
+      while (low <= high)
+        if ((low + high) % 2 == 0)
+          assertEquals(sorted[low++], heap.deleteMin());
+        else
+          assertEquals(sorted[high--], heap.deleteMax());
+      assertTrue(heap.isEmpty());
+    }
+  }
+
+  @Test
+  public void testComparator() {
+    MinMaxHeap<String> heap = new MinMaxHeap<>(new String[] { "ccc", "a", "bb", "dddd" },
+        Comparator.comparingInt(String::length).reversed());
+    assertEquals("dddd", heap.findMin());
+    assertEquals("a", heap.findMax());
+    heap.insert("eeeee");
+    assertEquals("eeeee", heap.deleteMin());
+    assertEquals("a", heap.deleteMax());
+    assertEquals("bb", heap.deleteMax());
+    assertEquals(2, heap.size());
+  }
+
+  @Test
+  public void testComparatorReturningExtremes() {
+    // Legal results whose negation overflows
+    Comparator<Integer> extreme = (a, b) -> a < b ? Integer.MIN_VALUE : a > b ? Integer.MAX_VALUE : 0;
+    Random rnd = new Random(5);
+    MinMaxHeap<Integer> heap = new MinMaxHeap<>(extreme);
+    TreeMap<Integer, Integer> counts = new TreeMap<>();
+    for (int op = 0; op < 5000; op++) {
+      if (counts.isEmpty() || rnd.nextInt(3) > 0) {
+        int x = rnd.nextInt(500);
+        heap.insert(x);
+        counts.merge(x, 1, Integer::sum);
+      } else {
+        int x = rnd.nextBoolean() ? heap.deleteMin() : heap.deleteMax();
+        assertTrue(x == counts.firstKey() || x == counts.lastKey());
+        if (counts.merge(x, -1, Integer::sum) == 0)
+          counts.remove(x);
+      }
+      assertHeapOrder(heap, extreme);
+    }
+  }
+}
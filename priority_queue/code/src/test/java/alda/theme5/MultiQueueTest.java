@@ -0,0 +1,77 @@
+package alda.theme5;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+public class MultiQueueTest {
+
+  @Test
+  public void testSingleThreadIsRoughlyOrdered() {
+    MultiQueue<Integer> queue = new MultiQueue<>(2, 4);
+    List<Integer> items = new ArrayList<>();
+    for (int i = 0; i < 10_000; i++)
+      items.add(i);
+    Collections.shuffle(items, new Random(42));
+    for (int x : items)
+      queue.insert(x);
+    assertEquals(10_000, queue.size());
+
+    long rankError = 0;
+    boolean[] seen = new boolean[10_000];
+    for (int n = 0; n < 10_000; n++) {
+      int x = queue.deleteMin();
+      assertFalse(seen[x]);
+      seen[x] = true;
+      rankError += Math.abs(x - n);
+    }
+    assertNull(queue.deleteMin());
+    assertTrue(queue.isEmpty());
+    // Two-choice sampling keeps the mean rank error in the order of the heap count
+    assertTrue(rankError / 10_000.0 < 10 * queue.heapCount(), "Mean rank error " + rankError / 10_000.0);
+  }
+
+  @Test
+  public void testConcurrentProducersAndConsumers() throws InterruptedException {
+    int threads = 8;
+    int perThread = 20_000;
+    MultiQueue<Integer> queue = new MultiQueue<>(2, threads, Comparator.reverseOrder());
+    AtomicIntegerArray removed = new AtomicIntegerArray(threads * perThread);
+    AtomicInteger removedCount = new AtomicInteger();
+
+    List<Thread> workers = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      int first = t * perThread;
+      workers.add(new Thread(() -> {
+        for (int i = 0; i < perThread; i++)
+          queue.insert(first + i);
+      }));
+      workers.add(new Thread(() -> {
+        while (removedCount.get() < threads * perThread) {
+          Integer x = queue.deleteMin();
+          if (x != null) {
+            assertEquals(0, removed.getAndIncrement(x));
+            removedCount.incrementAndGet();
+          }
+        }
+      }));
+    }
+    for (Thread worker : workers)
+      worker.start();
+    for (Thread worker : workers)
+      worker.join();
+
+    assertEquals(threads * perThread, removedCount.get());
+    for (int i = 0; i < removed.length(); i++)
+      assertEquals(1, removed.get(i));
+    assertTrue(queue.isEmpty());
+  }
+
+}
@@ -0,0 +1,96 @@
+package alda.theme5;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+public class OffHeapLongDHeapTest {
+
+  @Test
+  public void testMatchesPriorityQueueAcrossSegments() throws IOException {
+    Random rnd = new Random(42);
+    PriorityQueue<Long> expected = new PriorityQueue<>();
+    try (OffHeapLongDHeap heap = new OffHeapLongDHeap(3, 16)) {
+      for (int op = 0; op < 20_000; op++) {
+        if (expected.isEmpty() || rnd.nextInt(3) > 0) {
+          long key = rnd.nextInt(1000) - 500;
+          heap.insert(key, key * 2);
+          expected.add(key);
+        } else {
+          assertEquals(expected.peek(), heap.findMin());
+          assertEquals(2 * heap.findMin(), heap.findMinPayload());
+          assertEquals(expected.poll(), heap.deleteMin());
+        }
+        assertEquals(expected.size(), heap.size());
+      }
+      assertTrue(heap.segmentCount() > 1);
+      for (long index = 2; index <= heap.size(); index++)
+        assertTrue(heap.get(heap.parentIndex(index)) <= heap.get(index));
+      heap.makeEmpty();
+      assertTrue(heap.isEmpty());
+      assertThrows(UnderflowException.class, heap::findMin);
+    }
+  }
+
+  @Test
+  public void testReopensFileBackedHeap(@TempDir Path dir) throws IOException {
+    Random rnd = new Random(7);
+    long[] keys = rnd.longs(1_000).toArray();
+    try (OffHeapLongDHeap heap = OffHeapLongDHeap.open(dir, 4, 64)) {
+      for (int i = 0; i < keys.length; i++)
+        heap.insert(keys[i], i);
+      assertEquals(16, heap.segmentCount());
+    }
+
+    Arrays.sort(keys);
+    try (OffHeapLongDHeap heap = OffHeapLongDHeap.open(dir, 2, 8)) {
+      assertEquals(keys.length, heap.size());
+      for (int i = 0; i < 500; i++)
+        assertEquals(keys[i], heap.deleteMin());
+    }
+    try (OffHeapLongDHeap heap = OffHeapLongDHeap.open(dir, 2, 8)) {
+      assertEquals(500, heap.size());
+      assertEquals(keys[500], heap.findMin());
+    }
+  }
+
+  @Test
+  public void testRefusesHeapChangedAfterForce(@TempDir Path dir) throws IOException {
+    Random rnd = new Random(11);
+    long[] keys = rnd.longs(1_000).toArray();
+    OffHeapLongDHeap abandoned = OffHeapLongDHeap.open(dir, 4, 64);
+    for (int i = 0; i < keys.length; i++)
+      abandoned.insert(keys[i], i);
+    abandoned.force();
+    try (OffHeapLongDHeap heap = OffHeapLongDHeap.open(dir, 4, 64)) {
+      assertEquals(keys.length, heap.size());
+    }
+
+    // The segments now hold part of the deletes, as after a crash
+    for (int i = 0; i < 500; i++)
+      abandoned.deleteMin();
+    assertThrows(IOException.class, () -> OffHeapLongDHeap.open(dir, 4, 64));
+
+    abandoned.force();
+    Arrays.sort(keys);
+    try (OffHeapLongDHeap heap = OffHeapLongDHeap.open(dir, 4, 64)) {
+      assertEquals(500, heap.size());
+      assertEquals(keys[500], heap.findMin());
+    }
+  }
+
+  @Test
+  public void testIllegalArgumentsAndClose() throws IOException {
+    assertThrows(IllegalArgumentException.class, () -> new OffHeapLongDHeap(1));
+    assertThrows(IllegalArgumentException.class, () -> new OffHeapLongDHeap(4, 100));
+    OffHeapLongDHeap heap = new OffHeapLongDHeap();
+    heap.close();
+    assertThrows(IllegalStateException.class, () -> heap.insert(1, 1));
+  }
+}
@@ -0,0 +1,71 @@
+package alda.theme5;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+public class PairingHeapTest {
+
+  @Test
+  public void testFunctionality() {
+    Random rnd = new Random(42);
+    PairingHeap<Integer> heap = new PairingHeap<>();
+    PriorityQueue<Integer> oracle = new PriorityQueue<>();
+
+    for (int n = 0; n < 20_000; n++) {
+      int tal = rnd.nextInt(1000);
+      heap.insert(tal);
+      oracle.add(tal);
+      while (!heap.isEmpty() && rnd.nextBoolean())
+        assertEquals(oracle.poll(), heap.deleteMin());
+      assertEquals(oracle.size(), heap.size());
+    }
+    assertThrows(UnderflowException.class, () -> {
+      heap.makeEmpty();
+      heap.findMin();
+    });
+  }
+
+  @Test
+  public void testMeld() {
+    Random rnd = new Random(7);
+    PairingHeap<Integer> global = new PairingHeap<>(Comparator.reverseOrder());
+    PriorityQueue<Integer> oracle = new PriorityQueue<>(Comparator.reverseOrder());
+    for (int partition = 0; partition < 50; partition++) {
+      PairingHeap<Integer> local = new PairingHeap<>(Comparator.reverseOrder());
+      for (int i = 0; i < rnd.nextInt(200); i++) {
+        int tal = rnd.nextInt(10_000);
+        local.insert(tal);
+        oracle.add(tal);
+      }
+      // Some partitions have a consolidated root before the meld
+      if (partition % 3 == 0 && !local.isEmpty())
+        local.findMin();
+      global.meld(local);
+      assertTrue(local.isEmpty());
+      assertEquals(oracle.size(), global.size());
+      if (partition % 5 == 0 && !oracle.isEmpty())
+        assertEquals(oracle.poll(), global.deleteMin());
+    }
+    while (!oracle.isEmpty())
+      assertEquals(oracle.poll(), global.deleteMin());
+    assertThrows(IllegalArgumentException.class, () -> global.meld(global));
+  }
+
+  @Test
+  public void testNodesAreReused() {
+    PairingHeap<Integer> heap = new PairingHeap<>();
+    for (int i = 0; i < 1000; i++)
+      heap.insert(i);
+    for (int i = 0; i < 1000; i++)
+      heap.deleteMin();
+    assertEquals(1000, heap.pooled());
+    for (int i = 0; i < 600; i++)
+      heap.insert(i);
+    assertEquals(400, heap.pooled());
+  }
+
+}
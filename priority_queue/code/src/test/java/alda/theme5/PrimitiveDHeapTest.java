@@ -0,0 +1,140 @@
+package alda.theme5;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+public class PrimitiveDHeapTest {
+
+  @Test
+  public void testLongHeapAgainstOracle() {
+    Random rnd = new Random(42);
+    for (int d = 2; d <= 8; d++) {
+      LongDHeap heap = new LongDHeap(d, true);
+      PriorityQueue<Long> oracle = new PriorityQueue<>();
+      for (int n = 0; n < 5000; n++) {
+        long key = rnd.nextLong() % 1000;
+        // The payload is derived from the key so it can be checked
+        heap.insert(key, (int) key * 3);
+        oracle.add(key);
+        while (!heap.isEmpty() && rnd.nextBoolean()) {
+          assertEquals(oracle.peek() * 3, heap.findMinPayload());
+          assertEquals(oracle.poll(), heap.deleteMin());
+        }
+        assertEquals(oracle.size(), heap.size());
+      }
+    }
+  }
+
+  @Test
+  public void testIntHeapAgainstOracle() {
+    Random rnd = new Random(42);
+    for (int d = 2; d <= 8; d++) {
+      IntDHeap heap = new IntDHeap(d);
+      PriorityQueue<Integer> oracle = new PriorityQueue<>();
+      for (int n = 0; n < 5000; n++) {
+        int key = rnd.nextInt();
+        heap.insert(key);
+        oracle.add(key);
+        while (!heap.isEmpty() && rnd.nextBoolean())
+          assertEquals(oracle.poll(), heap.deleteMin());
+      }
+      assertFalse(heap.hasPayload());
+      heap.insert(1);
+      assertThrows(IllegalStateException.class, heap::findMinPayload);
+    }
+  }
+
+  @Test
+  public void testSameLayoutAsDHeap() {
+    Random rnd = new Random(7);
+    for (int d = 2; d <= 5; d++) {
+      DHeap<Long> reference = new DHeap<>(d);
+      LongDHeap heap = new LongDHeap(d);
+      for (int n = 0; n < 200; n++) {
+        long key = rnd.nextInt(100);
+        reference.insert(key);
+        heap.insert(key);
+        if (n % 3 == 0)
+          assertEquals(reference.deleteMin(), heap.deleteMin());
+        for (int i = 1; i <= heap.size(); i++)
+          assertEquals(reference.get(i), heap.get(i));
+      }
+      assertEquals(reference.parentIndex(17), heap.parentIndex(17));
+      assertEquals(reference.firstChildIndex(17), heap.firstChildIndex(17));
+    }
+  }
+
+  @Test
+  public void testBuildHeap() {
+    long[] keys = new Random(1).longs(1000).toArray();
+    LongDHeap heap = new LongDHeap(keys, 4);
+    long[] sorted = keys.clone();
+    Arrays.sort(sorted);
+    for (long key : sorted)
+      assertEquals(key, heap.deleteMin());
+    assertThrows(UnderflowException.class, heap::findMin);
+    assertThrows(IllegalArgumentException.class, () -> new IntDHeap(1));
+  }
+
+  @Test
+  public void testBuildHeapSmallSizes() {
+    // Sizes where (n - 2) / d + 1 differs from n / d, the first parent
+    // buildHeap must visit
+    for (int d = 2; d <= 8; d++)
+      for (int n = 0; n < 200; n++) {
+        long[] longKeys = new long[n];
+        int[] intKeys = new int[n];
+        for (int i = 0; i < n; i++) {
+          longKeys[i] = n - i;
+          intKeys[i] = n - i;
+        }
+        LongDHeap longHeap = new LongDHeap(longKeys, d);
+        IntDHeap intHeap = new IntDHeap(intKeys, d);
+        for (int expected = 1; expected <= n; expected++) {
+          assertEquals(expected, longHeap.deleteMin(), "LongDHeap n " + n + " d " + d);
+          assertEquals(expected, intHeap.deleteMin(), "IntDHeap n " + n + " d " + d);
+        }
+        assertTrue(longHeap.isEmpty());
+        assertTrue(intHeap.isEmpty());
+      }
+  }
+
+  @Test
+  public void testBranchReducedChildScanGivesSameLayout() {
+    Random rnd = new Random(3);
+    // Extremes check that the key difference does not overflow
+    long[] longKeys = { Long.MIN_VALUE, Long.MAX_VALUE, -1, 0, 1, Long.MIN_VALUE + 1, Long.MAX_VALUE - 1 };
+    int[] intKeys = { Integer.MIN_VALUE, Integer.MAX_VALUE, -1, 0, 1, Integer.MIN_VALUE + 1, Integer.MAX_VALUE - 1 };
+    for (int d = 2; d <= 8; d++) {
+      LongDHeap longBranching = new LongDHeap(d, true);
+      LongDHeap longReduced = new LongDHeap(d, true);
+      longReduced.setBranchReducedChildScan(true);
+      IntDHeap intBranching = new IntDHeap(d, true);
+      IntDHeap intReduced = new IntDHeap(d, true);
+      intReduced.setBranchReducedChildScan(true);
+      for (int n = 0; n < 3000; n++) {
+        int pick = rnd.nextInt(longKeys.length + 50);
+        long longKey = pick < longKeys.length ? longKeys[pick] : rnd.nextLong();
+        int intKey = pick < intKeys.length ? intKeys[pick] : rnd.nextInt();
+        longBranching.insert(longKey, n);
+        longReduced.insert(longKey, n);
+        intBranching.insert(intKey, n);
+        intReduced.insert(intKey, n);
+        if (rnd.nextBoolean()) {
+          assertEquals(longBranching.findMinPayload(), longReduced.findMinPayload());
+          assertEquals(longBranching.deleteMin(), longReduced.deleteMin());
+          assertEquals(intBranching.findMinPayload(), intReduced.findMinPayload());
+          assertEquals(intBranching.deleteMin(), intReduced.deleteMin());
+        }
+      }
+      for (int i = 1; i <= longBranching.size(); i++)
+        assertEquals(longBranching.get(i), longReduced.get(i));
+      for (int i = 1; i <= intBranching.size(); i++)
+        assertEquals(intBranching.get(i), intReduced.get(i));
+    }
+  }
+}
@@ -0,0 +1,57 @@
+package alda.theme5;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class TopKTest {
+
+  @Test
+  public void testReplaceMin() {
+    DHeap<Integer> heap = new DHeap<>(3);
+    for (int tal : new int[] { 5, 3, 8, 1, 9 })
+      heap.insert(tal);
+    assertEquals(1, heap.replaceMin(7));
+    assertEquals(3, heap.replaceMin(0));
+    assertEquals(0, heap.deleteMin());
+    assertEquals(5, heap.deleteMin());
+    assertThrows(UnderflowException.class, () -> new DHeap<Integer>().replaceMin(1));
+  }
+
+  @Test
+  public void testKeepsLargest() {
+    Random rnd = new Random(42);
+    int[] stream = rnd.ints(100_000, 0, 1_000_000).toArray();
+    TopK<Integer> top = new TopK<>(100);
+    int kept = 0;
+    for (int x : stream)
+      if (top.offer(x))
+        kept++;
+
+    List<Integer> expected = IntStream.of(stream).boxed().sorted(Comparator.reverseOrder()).limit(100)
+        .collect(Collectors.toList());
+    assertEquals(expected, top.toList());
+    assertEquals(expected.get(99), top.threshold());
+    // Most of a random stream is rejected without touching the heap
+    assertTrue(kept < 2000, "Kept " + kept);
+  }
+
+  @Test
+  public void testParallelCollector() {
+    List<Integer> expected = IntStream.range(0, 1_000_000).map(i -> (int) ((i * 2654435761L) % 1_000_003))
+        .boxed().sorted(Comparator.reverseOrder()).limit(50).collect(Collectors.toList());
+    List<Integer> top = IntStream.range(0, 1_000_000).parallel().map(i -> (int) ((i * 2654435761L) % 1_000_003))
+        .boxed().collect(TopK.collector(50));
+    assertEquals(expected, top);
+
+    List<String> shortest = List.of("ccc", "a", "dddd", "bb").parallelStream()
+        .collect(TopK.collector(2, Comparator.comparingInt(String::length).reversed()));
+    assertEquals(List.of("a", "bb"), shortest);
+  }
+
+}